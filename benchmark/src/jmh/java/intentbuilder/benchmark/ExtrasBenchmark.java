@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentBuilder;
+
+/**
+ * Raw {@code new Intent()} plus {@code putExtra} against the {@link IntentBuilder} chain, for each
+ * family of extra overloads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtrasBenchmark {
+
+  private final int[] mInts = {1, 2, 3, 4, 5, 6, 7, 8};
+  private final long[] mLongs = {1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L};
+  private final Bundle mBundle = new Bundle();
+  private final ArrayList<String> mStrings = new ArrayList<>();
+  private final ArrayList<Integer> mIntegers = new ArrayList<>();
+
+  public ExtrasBenchmark() {
+    for (int i = 0; i < 8; i++) {
+      mStrings.add("value_" + i);
+      mIntegers.add(i);
+    }
+  }
+
+  @Benchmark
+  public Intent primitivesRaw() {
+    Intent intent = new Intent();
+    intent.putExtra("boolean", true);
+    intent.putExtra("int", 1);
+    intent.putExtra("long", 2L);
+    intent.putExtra("double", 3d);
+    return intent;
+  }
+
+  @Benchmark
+  public Intent primitivesBuilder() {
+    return new IntentBuilder()
+        .extra("boolean", true)
+        .extra("int", 1)
+        .extra("long", 2L)
+        .extra("double", 3d)
+        .build();
+  }
+
+  @Benchmark
+  public Intent primitiveArraysRaw() {
+    Intent intent = new Intent();
+    intent.putExtra("ints", mInts);
+    intent.putExtra("longs", mLongs);
+    return intent;
+  }
+
+  @Benchmark
+  public Intent primitiveArraysBuilder() {
+    return new IntentBuilder()
+        .extra("ints", mInts)
+        .extra("longs", mLongs)
+        .build();
+  }
+
+  @Benchmark
+  public Intent objectsRaw() {
+    Intent intent = new Intent();
+    intent.putExtra("string", "value");
+    intent.putExtra("chars", (CharSequence) "value");
+    intent.putExtra("bundle", mBundle);
+    return intent;
+  }
+
+  @Benchmark
+  public Intent objectsBuilder() {
+    return new IntentBuilder()
+        .extra("string", "value")
+        .extra("chars", (CharSequence) "value")
+        .extra("bundle", mBundle)
+        .build();
+  }
+
+  @Benchmark
+  public Intent collectionsRaw() {
+    Intent intent = new Intent();
+    intent.putStringArrayListExtra("strings", mStrings);
+    intent.putIntegerArrayListExtra("integers", mIntegers);
+    return intent;
+  }
+
+  @Benchmark
+  public Intent collectionsBuilder() {
+    return new IntentBuilder()
+        .extraStringList("strings", mStrings)
+        .extraIntegerList("integers", mIntegers)
+        .build();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentBuilder;
+
+/**
+ * Per-variant cost of deriving intents from a common base of 30 extras: forking the base builder
+ * against copying the base intent into a new builder. Run with {@code -prof gc} for the bytes
+ * allocated per variant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ForkBenchmark {
+
+  private IntentBuilder mBase;
+  private Intent mBaseIntent;
+  private int mPosition;
+
+  @Setup
+  public void setUp() {
+    mBase = new IntentBuilder("my.app.OPEN").className("my.app", "my.app.DetailActivity");
+    for (int i = 0; i < 30; i++) {
+      mBase.extra("key_" + i, i);
+    }
+    mBaseIntent = new IntentBuilder("my.app.OPEN").className("my.app", "my.app.DetailActivity")
+        .extras(mBase.fork().build())
+        .build();
+  }
+
+  @Benchmark
+  public Intent fork() {
+    return mBase.fork().extra("position", mPosition++).build();
+  }
+
+  @Benchmark
+  public Intent copy() {
+    return new IntentBuilder(new Intent(mBaseIntent)).extra("position", mPosition++).build();
+  }
+}
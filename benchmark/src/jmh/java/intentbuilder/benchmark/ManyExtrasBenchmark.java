@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentBuilder;
+
+/**
+ * Immediate, deferred and capacity-hinted builders as the number of extras grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ManyExtrasBenchmark {
+
+  @Param({"5", "20", "100"})
+  public int mCount;
+
+  private String[] mKeys;
+
+  @Setup
+  public void setUp() {
+    mKeys = new String[mCount];
+    for (int i = 0; i < mCount; i++) {
+      mKeys[i] = "key_" + i;
+    }
+  }
+
+  @Benchmark
+  public Intent immediate() {
+    return fill(new IntentBuilder()).build();
+  }
+
+  @Benchmark
+  public Intent deferred() {
+    return fill(new IntentBuilder().deferred()).build();
+  }
+
+  @Benchmark
+  public Intent expectedExtras() {
+    return fill(new IntentBuilder().expectedExtras(mCount)).build();
+  }
+
+  private IntentBuilder fill(IntentBuilder builder) {
+    for (int i = 0; i < mCount; i++) {
+      builder.extra(mKeys[i], i);
+    }
+    return builder;
+  }
+}
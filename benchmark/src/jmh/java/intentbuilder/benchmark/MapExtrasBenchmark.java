@@ -0,0 +1,128 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Parcelable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentBuilder;
+
+/**
+ * Copying a map of analytics parameters into an intent with {@link IntentBuilder#extras(Map)}
+ * against the instanceof chain a call site would otherwise need to pick an overload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapExtrasBenchmark {
+
+  @Param({"10", "60"})
+  public int mSize;
+
+  private final Map<String, Object> mExtras = new LinkedHashMap<>();
+
+  @Setup
+  public void setup() {
+    Object[] samples = {
+        1, 2L, true, 3d, "value", new int[]{1, 2}, new long[]{3L}, new String[]{"a", "b"},
+        Uri.parse("content://authority/path")
+    };
+    for (int i = 0; i < mSize; i++) {
+      mExtras.put("key_" + i, samples[i % samples.length]);
+    }
+  }
+
+  @Benchmark
+  public Intent cascade() {
+    IntentBuilder builder = new IntentBuilder().expectedExtras(mExtras.size());
+    for (Map.Entry<String, Object> entry : mExtras.entrySet()) {
+      String name = entry.getKey();
+      Object value = entry.getValue();
+      if (value instanceof Boolean) {
+        builder.extra(name, (boolean) (Boolean) value);
+      } else if (value instanceof Byte) {
+        builder.extra(name, (byte) (Byte) value);
+      } else if (value instanceof Character) {
+        builder.extra(name, (char) (Character) value);
+      } else if (value instanceof Double) {
+        builder.extra(name, (double) (Double) value);
+      } else if (value instanceof Float) {
+        builder.extra(name, (float) (Float) value);
+      } else if (value instanceof Integer) {
+        builder.extra(name, (int) (Integer) value);
+      } else if (value instanceof Long) {
+        builder.extra(name, (long) (Long) value);
+      } else if (value instanceof Short) {
+        builder.extra(name, (short) (Short) value);
+      } else if (value instanceof String) {
+        builder.extra(name, (String) value);
+      } else if (value instanceof boolean[]) {
+        builder.extra(name, (boolean[]) value);
+      } else if (value instanceof byte[]) {
+        builder.extra(name, (byte[]) value);
+      } else if (value instanceof char[]) {
+        builder.extra(name, (char[]) value);
+      } else if (value instanceof double[]) {
+        builder.extra(name, (double[]) value);
+      } else if (value instanceof float[]) {
+        builder.extra(name, (float[]) value);
+      } else if (value instanceof int[]) {
+        builder.extra(name, (int[]) value);
+      } else if (value instanceof long[]) {
+        builder.extra(name, (long[]) value);
+      } else if (value instanceof short[]) {
+        builder.extra(name, (short[]) value);
+      } else if (value instanceof String[]) {
+        builder.extra(name, (String[]) value);
+      } else if (value instanceof CharSequence) {
+        builder.extra(name, (CharSequence) value);
+      } else if (value instanceof Parcelable) {
+        builder.extra(name, (Parcelable) value);
+      } else {
+        throw new IllegalArgumentException(name);
+      }
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public Intent extrasMap() {
+    return new IntentBuilder().expectedExtras(mExtras.size()).extras(mExtras).build();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntList;
+import intentbuilder.IntentBuilder;
+import intentbuilder.IntentReader;
+
+/**
+ * Passing a feed of ids through an {@link ArrayList} of boxed Integers against an
+ * {@link IntList}, on the way in and on the way out. Run with {@code -prof gc} to compare
+ * allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrimitiveListBenchmark {
+
+  @Param({"100", "10000"})
+  public int mSize;
+
+  private int[] mIds;
+  private Intent mBoxedIntent;
+  private Intent mPrimitiveIntent;
+
+  @Setup
+  public void setup() {
+    mIds = new int[mSize];
+    for (int i = 0; i < mSize; i++) {
+      mIds[i] = 1000 + i * 7;
+    }
+    mBoxedIntent = buildBoxed();
+    mPrimitiveIntent = buildPrimitive();
+  }
+
+  @Benchmark
+  public Intent buildBoxed() {
+    ArrayList<Integer> ids = new ArrayList<>(mIds.length);
+    for (int id : mIds) {
+      ids.add(id);
+    }
+    return new IntentBuilder().extraIntegerList("ids", ids).build();
+  }
+
+  @Benchmark
+  public Intent buildPrimitive() {
+    IntList ids = new IntList(mIds.length);
+    for (int id : mIds) {
+      ids.add(id);
+    }
+    return new IntentBuilder().extra("ids", ids).build();
+  }
+
+  @Benchmark
+  public long readBoxed() {
+    ArrayList<Integer> ids = new IntentReader(mBoxedIntent).getIntegerList("ids");
+    long sum = 0;
+    for (int i = 0, size = ids.size(); i < size; i++) {
+      sum += ids.get(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long readPrimitive() {
+    IntList ids = new IntentReader(mPrimitiveIntent).getIntList("ids");
+    long sum = 0;
+    for (int i = 0, size = ids.size(); i < size; i++) {
+      sum += ids.get(i);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentQueue;
+import intentbuilder.IntentSpec;
+import intentbuilder.IntentSpecCodec;
+
+/**
+ * Durable enqueueing of a batch of specs: IntentQueue with one sync per record and one sync per
+ * batch, against writing each record to a file and syncing it, the pattern of one SQLite insert
+ * per transaction. SQLite itself needs the Android runtime and cannot run here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueueBenchmark {
+
+  @Param({"1", "100"})
+  public int mBatch;
+
+  private File mDirectory;
+  private IntentQueue mQueue;
+  private RandomAccessFile mFile;
+  private IntentSpec mSpec;
+
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+    mDirectory = File.createTempFile("queue", "");
+    mDirectory.delete();
+    mQueue = new IntentQueue(mDirectory);
+    mFile = new RandomAccessFile(new File(mDirectory, "baseline.bin"), "rw");
+    mSpec = IntentSpec.builder()
+        .action("com.example.action.SYNC")
+        .className("com.example", "com.example.SyncService")
+        .extra("item_id", 42L)
+        .extra("account", "user@example.com")
+        .build();
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    mQueue.drain(1000, new IntentQueue.Handler() {
+      @Override
+      public void handle(List<IntentSpec> batch) {
+      }
+    });
+    mQueue.close();
+    mFile.close();
+    for (File file : mDirectory.listFiles()) {
+      file.delete();
+    }
+    mDirectory.delete();
+  }
+
+  @Benchmark
+  public void queueSyncEach() throws IOException {
+    for (int i = 0; i < mBatch; i++) {
+      mQueue.append(mSpec);
+      mQueue.sync();
+    }
+  }
+
+  @Benchmark
+  public void queueGroupCommit() throws IOException {
+    for (int i = 0; i < mBatch; i++) {
+      mQueue.append(mSpec);
+    }
+    mQueue.sync();
+  }
+
+  @Benchmark
+  public void fileSyncEach() throws IOException {
+    for (int i = 0; i < mBatch; i++) {
+      mFile.write(IntentSpecCodec.encode(mSpec));
+      mFile.getFD().sync();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentBuilder;
+import intentbuilder.IntentTemplate;
+
+/**
+ * A full builder chain per intent against pooled builders and a frozen {@link IntentTemplate}
+ * that only adds the per-call extra.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReuseBenchmark {
+
+  private IntentTemplate mTemplate;
+  private int mPosition;
+
+  @Setup
+  public void setUp() {
+    mTemplate = chain(new IntentBuilder()).freeze();
+  }
+
+  @Benchmark
+  public Intent chained() {
+    return chain(new IntentBuilder()).extra("position", mPosition++).build();
+  }
+
+  @Benchmark
+  public Intent pooled() {
+    IntentBuilder builder = IntentBuilder.obtain();
+    Intent intent = chain(builder).extra("position", mPosition++).build();
+    builder.recycle();
+    return intent;
+  }
+
+  @Benchmark
+  public Intent template() {
+    return mTemplate.with().extra("position", mPosition++).build();
+  }
+
+  private static IntentBuilder chain(IntentBuilder builder) {
+    return builder
+        .action("my.app.SYNC")
+        .className("my.app", "my.app.SyncService")
+        .flags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES)
+        .categories(Intent.CATEGORY_DEFAULT)
+        .extra("account", "me@example.com")
+        .extra("manual", false);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import intentbuilder.DeepLinkRouter;
+import intentbuilder.IntentBuilder;
+import intentbuilder.IntentTemplate;
+
+/**
+ * Deep link lookup as routes are added: the DeepLinkRouter trie against walking a list of
+ * regexes. The URI matches the last registered route, the worst case for the list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouterBenchmark {
+
+  @Param({"10", "1000", "5000"})
+  public int mRoutes;
+
+  private DeepLinkRouter mRouter;
+  private Pattern[] mPatterns;
+  private String mUri;
+
+  @Setup
+  public void setUp() {
+    IntentTemplate template = new IntentBuilder("com.example.action.VIEW").freeze();
+    mRouter = new DeepLinkRouter();
+    mPatterns = new Pattern[mRoutes];
+    for (int i = 0; i < mRoutes; i++) {
+      mRouter.register("https://example.com/section" + i + "/items/{id}?ref={ref}", template);
+      mPatterns[i] = Pattern.compile(
+          "^https://example\\.com/section" + i + "/items/([^/?#]+)(?:\\?ref=([^&#]*))?$");
+    }
+    mUri = "https://example.com/section" + (mRoutes - 1) + "/items/42?ref=mail";
+  }
+
+  @Benchmark
+  public DeepLinkRouter.Match trie() {
+    return mRouter.match(mUri);
+  }
+
+  @Benchmark
+  public String regexList() {
+    for (Pattern pattern : mPatterns) {
+      Matcher matcher = pattern.matcher(mUri);
+      if (matcher.matches()) {
+        return matcher.group(1);
+      }
+    }
+    return null;
+  }
+}
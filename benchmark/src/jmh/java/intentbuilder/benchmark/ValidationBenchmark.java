@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import intentbuilder.IntentBuilder;
+import intentbuilder.PreConditions;
+import intentbuilder.ValidationPolicy;
+
+/**
+ * Cost of the {@link PreConditions} checks on their own and inside the builder, per
+ * {@link ValidationPolicy}. Run with {@code -Dintentbuilder.validation=off} in the JVM arguments
+ * to measure the globally compiled-out path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValidationBenchmark {
+
+  @Param({"STRICT", "DEBUG_ONLY", "OFF"})
+  public ValidationPolicy mPolicy;
+
+  private final String mName = "my_key";
+  private final int[] mValue = {1, 2, 3};
+
+  @Benchmark
+  public void preConditions() {
+    PreConditions.validateNotBlank(mName, "Name");
+    PreConditions.validateNotEmpty(mValue, "Value");
+    PreConditions.validateNotNull(mName, "Value");
+  }
+
+  @Benchmark
+  public Intent builder() {
+    return new IntentBuilder()
+        .validation(mPolicy)
+        .action("my.app.ACTION")
+        .extra("int", 1)
+        .extra("string", "value")
+        .extra("ints", mValue)
+        .build();
+  }
+}
@@ -0,0 +1,561 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@code <Name>IntentBuilder} and a {@code <Name>IntentReader} for every Activity,
+ * Service or BroadcastReceiver with {@code @IntentExtra} fields. Generated code uses constant keys
+ * and calls the matching {@code IntentBuilder.extra(...)} overload and {@code Intent} getter
+ * directly, without reflection or boxing.
+ */
+public class IntentExtraProcessor extends AbstractProcessor {
+
+  static final String INTENT_EXTRA = "intentbuilder.IntentExtra";
+
+  private static final String ACTIVITY = "android.app.Activity";
+  private static final String SERVICE = "android.app.Service";
+  private static final String RECEIVER = "android.content.BroadcastReceiver";
+  private static final String PARCELABLE = "android.os.Parcelable";
+  private static final String SERIALIZABLE = "java.io.Serializable";
+
+  // Parameter types of the object extra(String, ...) overloads a field type can match.
+  private static final String[] OBJECT_OVERLOADS = {
+      "java.lang.CharSequence", PARCELABLE, SERIALIZABLE
+  };
+
+  private Elements mElements;
+  private Types mTypes;
+  private Filer mFiler;
+  private Messager mMessager;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment env) {
+    super.init(env);
+    mElements = env.getElementUtils();
+    mTypes = env.getTypeUtils();
+    mFiler = env.getFiler();
+    mMessager = env.getMessager();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(INTENT_EXTRA);
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+    TypeElement annotation = mElements.getTypeElement(INTENT_EXTRA);
+    if (annotation == null) {
+      return false;
+    }
+    Map<TypeElement, List<Extra>> targets = new LinkedHashMap<>();
+    for (Element element : round.getElementsAnnotatedWith(annotation)) {
+      Extra extra = parse(element);
+      if (extra == null) {
+        continue;
+      }
+      TypeElement target = (TypeElement) element.getEnclosingElement();
+      List<Extra> extras = targets.get(target);
+      if (extras == null) {
+        extras = new ArrayList<>();
+        targets.put(target, extras);
+      }
+      extras.add(extra);
+    }
+    for (Map.Entry<TypeElement, List<Extra>> entry : targets.entrySet()) {
+      String component = componentMethod(entry.getKey());
+      if (component == null) {
+        error(entry.getKey(), "@IntentExtra fields must be declared in an Activity, Service or "
+            + "BroadcastReceiver");
+        continue;
+      }
+      try {
+        writeBuilder(entry.getKey(), component, entry.getValue());
+        writeReader(entry.getKey(), entry.getValue());
+      } catch (IOException e) {
+        error(entry.getKey(), "Unable to write intent classes: " + e.getMessage());
+      }
+    }
+    return true;
+  }
+
+  // //////////////////////
+  // Parsing
+  // //////////////////////
+
+  private Extra parse(Element element) {
+    if (element.getKind() != ElementKind.FIELD) {
+      error(element, "@IntentExtra can only be applied to fields");
+      return null;
+    }
+    Set<Modifier> modifiers = element.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+        || modifiers.contains(Modifier.FINAL)) {
+      error(element, "@IntentExtra fields must not be private, static or final");
+      return null;
+    }
+    TypeElement target = (TypeElement) element.getEnclosingElement();
+    VariableElement field = (VariableElement) element;
+    Kind kind = kindOf(field.asType());
+    if (kind == null) {
+      error(element, "Unsupported @IntentExtra type " + field.asType());
+      return null;
+    }
+    String name = field.getSimpleName().toString();
+    String key = keyOf(field);
+    if (key.isEmpty()) {
+      key = target.getQualifiedName() + "." + name;
+    }
+    TypeMirror type = field.asType();
+    boolean castValue = kind.builderCast != null && isAmbiguous(type);
+    boolean castGetter = kind.castGetter && !isType(type, SERIALIZABLE);
+    boolean unchecked = castGetter && !mTypes.isSameType(type, mTypes.erasure(type));
+    return new Extra(name, key, type.toString(), kind, castValue, castGetter, unchecked);
+  }
+
+  /**
+   * Whether {@code type} matches more than one object {@code extra(...)} overload, in which case
+   * the value has to be cast to pick one.
+   */
+  private boolean isAmbiguous(TypeMirror type) {
+    int matches = 0;
+    for (String overload : OBJECT_OVERLOADS) {
+      if (isSubtype(type, overload)) {
+        matches++;
+      }
+    }
+    return matches > 1;
+  }
+
+  private String keyOf(VariableElement field) {
+    for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+      TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+      if (!type.getQualifiedName().contentEquals(INTENT_EXTRA)) {
+        continue;
+      }
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+          : mirror.getElementValues().entrySet()) {
+        if (value.getKey().getSimpleName().contentEquals("value")) {
+          return String.valueOf(value.getValue().getValue());
+        }
+      }
+    }
+    return "";
+  }
+
+  private Kind kindOf(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return Kind.BOOLEAN;
+      case BYTE:
+        return Kind.BYTE;
+      case CHAR:
+        return Kind.CHAR;
+      case DOUBLE:
+        return Kind.DOUBLE;
+      case FLOAT:
+        return Kind.FLOAT;
+      case INT:
+        return Kind.INT;
+      case LONG:
+        return Kind.LONG;
+      case SHORT:
+        return Kind.SHORT;
+      case ARRAY:
+        return arrayKindOf(((ArrayType) type).getComponentType());
+      case DECLARED:
+        return declaredKindOf((DeclaredType) type);
+      default:
+        return null;
+    }
+  }
+
+  private Kind arrayKindOf(TypeMirror component) {
+    switch (component.getKind()) {
+      case BOOLEAN:
+        return Kind.BOOLEAN_ARRAY;
+      case BYTE:
+        return Kind.BYTE_ARRAY;
+      case CHAR:
+        return Kind.CHAR_ARRAY;
+      case DOUBLE:
+        return Kind.DOUBLE_ARRAY;
+      case FLOAT:
+        return Kind.FLOAT_ARRAY;
+      case INT:
+        return Kind.INT_ARRAY;
+      case LONG:
+        return Kind.LONG_ARRAY;
+      case SHORT:
+        return Kind.SHORT_ARRAY;
+      case DECLARED:
+        if (isType(component, "java.lang.String")) {
+          return Kind.STRING_ARRAY;
+        }
+        if (isType(component, "java.lang.CharSequence")) {
+          return Kind.CHAR_SEQUENCE_ARRAY;
+        }
+        if (isType(component, PARCELABLE)) {
+          return Kind.PARCELABLE_ARRAY;
+        }
+        return null;
+      default:
+        return null;
+    }
+  }
+
+  private Kind declaredKindOf(DeclaredType type) {
+    if (isType(type, "java.lang.String")) {
+      return Kind.STRING;
+    }
+    if (isType(type, "java.lang.CharSequence")) {
+      return Kind.CHAR_SEQUENCE;
+    }
+    if (isType(type, "android.os.Bundle")) {
+      return Kind.BUNDLE;
+    }
+    if (isRawType(type, "java.util.ArrayList")) {
+      List<? extends TypeMirror> arguments = type.getTypeArguments();
+      if (arguments.size() != 1) {
+        return null;
+      }
+      TypeMirror element = arguments.get(0);
+      if (isType(element, "java.lang.String")) {
+        return Kind.STRING_LIST;
+      }
+      if (isType(element, "java.lang.Integer")) {
+        return Kind.INTEGER_LIST;
+      }
+      if (isType(element, "java.lang.CharSequence")) {
+        return Kind.CHAR_SEQUENCE_LIST;
+      }
+      if (isSubtype(element, PARCELABLE)) {
+        return Kind.PARCELABLE_LIST;
+      }
+      return null;
+    }
+    if (isSubtype(type, PARCELABLE)) {
+      return Kind.PARCELABLE;
+    }
+    if (isSubtype(type, SERIALIZABLE)) {
+      return Kind.SERIALIZABLE;
+    }
+    return null;
+  }
+
+  private String componentMethod(TypeElement target) {
+    if (isSubtype(target.asType(), ACTIVITY)) {
+      return "activity";
+    }
+    if (isSubtype(target.asType(), SERVICE)) {
+      return "service";
+    }
+    if (isSubtype(target.asType(), RECEIVER)) {
+      return "receiver";
+    }
+    return null;
+  }
+
+  private boolean isType(TypeMirror type, String name) {
+    TypeElement element = mElements.getTypeElement(name);
+    return element != null && mTypes.isSameType(type, element.asType());
+  }
+
+  private boolean isRawType(TypeMirror type, String name) {
+    TypeElement element = mElements.getTypeElement(name);
+    return element != null
+        && mTypes.isSameType(mTypes.erasure(type), mTypes.erasure(element.asType()));
+  }
+
+  private boolean isSubtype(TypeMirror type, String name) {
+    TypeElement element = mElements.getTypeElement(name);
+    return element != null && mTypes.isAssignable(type, mTypes.erasure(element.asType()));
+  }
+
+  // //////////////////////
+  // Code generation
+  // //////////////////////
+
+  private void writeBuilder(TypeElement target, String component, List<Extra> extras)
+      throws IOException {
+    String packageName = packageOf(target);
+    String targetName = target.getQualifiedName().toString();
+    String className = generatedName(target, "IntentBuilder");
+
+    StringBuilder out = header(packageName);
+    out.append("import android.content.Context;\n")
+        .append("import android.content.Intent;\n\n")
+        .append("import intentbuilder.IntentBuilder;\n\n")
+        .append("public final class ").append(className).append(" {\n\n");
+    for (Extra extra : extras) {
+      out.append("  public static final String ").append(extra.constant()).append(" = \"")
+          .append(escape(extra.key)).append("\";\n");
+    }
+    out.append("\n  private final IntentBuilder mBuilder;\n\n")
+        .append("  public ").append(className).append("(Context context) {\n")
+        .append("    mBuilder = new IntentBuilder().context(context).").append(component)
+        .append("(").append(targetName).append(".class);\n")
+        .append("  }\n");
+    for (Extra extra : extras) {
+      out.append("\n  public ").append(className).append(" ").append(extra.name)
+          .append("(").append(extra.type).append(" value) {\n")
+          .append("    mBuilder.").append(extra.kind.builderMethod).append("(")
+          .append(extra.constant()).append(", ")
+          .append(extra.castValue ? "(" + extra.kind.builderCast + ") " : "")
+          .append("value);\n")
+          .append("    return this;\n")
+          .append("  }\n");
+    }
+    out.append("\n  public IntentBuilder builder() {\n")
+        .append("    return mBuilder;\n")
+        .append("  }\n\n")
+        .append("  public Intent build() {\n")
+        .append("    return mBuilder.build();\n")
+        .append("  }\n")
+        .append("}\n");
+    write(packageName, className, target, out);
+  }
+
+  private void writeReader(TypeElement target, List<Extra> extras) throws IOException {
+    String packageName = packageOf(target);
+    String targetName = target.getQualifiedName().toString();
+    String builderName = generatedName(target, "IntentBuilder");
+    String className = generatedName(target, "IntentReader");
+
+    StringBuilder out = header(packageName);
+    out.append("import android.content.Intent;\n\n")
+        .append("public final class ").append(className).append(" {\n\n")
+        .append("  private final Intent mIntent;\n\n")
+        .append("  public ").append(className).append("(Intent intent) {\n")
+        .append("    mIntent = intent;\n")
+        .append("  }\n");
+    for (Extra extra : extras) {
+      String key = builderName + "." + extra.constant();
+      out.append("\n  public boolean has").append(capitalize(extra.name)).append("() {\n")
+          .append("    return mIntent.hasExtra(").append(key).append(");\n")
+          .append("  }\n");
+      if (extra.kind.primitive) {
+        out.append("\n  public ").append(extra.type).append(" ").append(extra.name)
+            .append("(").append(extra.type).append(" defaultValue) {\n")
+            .append("    return mIntent.").append(extra.kind.getter).append("(").append(key)
+            .append(", defaultValue);\n");
+      } else {
+        out.append(extra.unchecked ? "\n  @SuppressWarnings(\"unchecked\")" : "")
+            .append("\n  public ").append(extra.type).append(" ").append(extra.name)
+            .append("() {\n")
+            .append("    return ").append(extra.castGetter ? "(" + extra.type + ") " : "")
+            .append("mIntent.").append(extra.kind.getter).append("(").append(key).append(");\n");
+      }
+      out.append("  }\n");
+    }
+    out.append("\n  public void bind(").append(targetName).append(" target) {\n");
+    for (Extra extra : extras) {
+      out.append("    if (has").append(capitalize(extra.name)).append("()) {\n")
+          .append("      target.").append(extra.name).append(" = ").append(extra.name)
+          .append(extra.kind.primitive ? "(target." + extra.name + ")" : "()").append(";\n")
+          .append("    }\n");
+    }
+    out.append("  }\n")
+        .append("}\n");
+    write(packageName, className, target, out);
+  }
+
+  private StringBuilder header(String packageName) {
+    StringBuilder out = new StringBuilder("// Generated by IntentExtraProcessor. Do not modify!\n");
+    if (!packageName.isEmpty()) {
+      out.append("package ").append(packageName).append(";\n\n");
+    }
+    return out;
+  }
+
+  private void write(String packageName, String className, TypeElement origin, CharSequence code)
+      throws IOException {
+    String name = packageName.isEmpty() ? className : packageName + "." + className;
+    Writer writer = mFiler.createSourceFile(name, origin).openWriter();
+    try {
+      writer.write(code.toString());
+    } finally {
+      writer.close();
+    }
+  }
+
+  private String packageOf(TypeElement type) {
+    PackageElement pkg = mElements.getPackageOf(type);
+    return pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+  }
+
+  private static String generatedName(TypeElement type, String suffix) {
+    String name = type.getSimpleName().toString();
+    Element enclosing = type.getEnclosingElement();
+    while (type.getNestingKind() == NestingKind.MEMBER && enclosing instanceof TypeElement) {
+      type = (TypeElement) enclosing;
+      name = type.getSimpleName() + "_" + name;
+      enclosing = type.getEnclosingElement();
+    }
+    return name + suffix;
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  private void error(Element element, String message) {
+    mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  // //////////////////////
+  // Model
+  // //////////////////////
+
+  private static final class Extra {
+    final String name;
+    final String key;
+    final String type;
+    final Kind kind;
+    final boolean castValue;
+    final boolean castGetter;
+    final boolean unchecked;
+
+    Extra(String name, String key, String type, Kind kind, boolean castValue,
+        boolean castGetter, boolean unchecked) {
+      this.name = name;
+      this.key = key;
+      this.type = type;
+      this.kind = kind;
+      this.castValue = castValue;
+      this.castGetter = castGetter;
+      this.unchecked = unchecked;
+    }
+
+    String constant() {
+      StringBuilder constant = new StringBuilder("EXTRA_");
+      for (int i = 0; i < name.length(); i++) {
+        char c = name.charAt(i);
+        if (Character.isUpperCase(c) && i > 0) {
+          constant.append('_');
+        }
+        constant.append(Character.toUpperCase(c));
+      }
+      return constant.toString();
+    }
+  }
+
+  /**
+   * How each supported field type is written by {@code IntentBuilder} and read from
+   * {@code Intent}. {@code builderCast} is the overload parameter type a value is cast to when
+   * its type matches several overloads, e.g. both Parcelable and Serializable. {@code castGetter}
+   * marks getters whose result has to be cast to the field type.
+   */
+  private enum Kind {
+    BOOLEAN("extra", null, "getBooleanExtra", true, false),
+    BYTE("extra", null, "getByteExtra", true, false),
+    CHAR("extra", null, "getCharExtra", true, false),
+    DOUBLE("extra", null, "getDoubleExtra", true, false),
+    FLOAT("extra", null, "getFloatExtra", true, false),
+    INT("extra", null, "getIntExtra", true, false),
+    LONG("extra", null, "getLongExtra", true, false),
+    SHORT("extra", null, "getShortExtra", true, false),
+    STRING("extra", null, "getStringExtra", false, false),
+
+    BOOLEAN_ARRAY("extra", null, "getBooleanArrayExtra", false, false),
+    BYTE_ARRAY("extra", null, "getByteArrayExtra", false, false),
+    CHAR_ARRAY("extra", null, "getCharArrayExtra", false, false),
+    DOUBLE_ARRAY("extra", null, "getDoubleArrayExtra", false, false),
+    FLOAT_ARRAY("extra", null, "getFloatArrayExtra", false, false),
+    INT_ARRAY("extra", null, "getIntArrayExtra", false, false),
+    LONG_ARRAY("extra", null, "getLongArrayExtra", false, false),
+    SHORT_ARRAY("extra", null, "getShortArrayExtra", false, false),
+
+    BUNDLE("extra", null, "getBundleExtra", false, false),
+    CHAR_SEQUENCE("extra", null, "getCharSequenceExtra", false, false),
+    PARCELABLE("extra", "android.os.Parcelable", "getParcelableExtra", false, false),
+    SERIALIZABLE("extra", "java.io.Serializable", "getSerializableExtra", false, true),
+
+    CHAR_SEQUENCE_ARRAY("extra", null, "getCharSequenceArrayExtra", false, false),
+    PARCELABLE_ARRAY("extra", null, "getParcelableArrayExtra", false, false),
+    STRING_ARRAY("extra", null, "getStringArrayExtra", false, false),
+    CHAR_SEQUENCE_LIST("extraCharSequenceList", null, "getCharSequenceArrayListExtra", false,
+        false),
+    INTEGER_LIST("extraIntegerList", null, "getIntegerArrayListExtra", false, false),
+    PARCELABLE_LIST("extraParcelableList", null, "getParcelableArrayListExtra", false, false),
+    STRING_LIST("extraStringList", null, "getStringArrayListExtra", false, false);
+
+    final String builderMethod;
+    final String builderCast;
+    final String getter;
+    final boolean primitive;
+    final boolean castGetter;
+
+    Kind(String builderMethod, String builderCast, String getter, boolean primitive,
+        boolean castGetter) {
+      this.builderMethod = builderMethod;
+      this.builderCast = builderCast;
+      this.getter = getter;
+      this.primitive = primitive;
+      this.castGetter = castGetter;
+    }
+  }
+}
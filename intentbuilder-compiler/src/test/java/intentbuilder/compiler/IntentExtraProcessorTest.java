@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder.compiler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntentExtraProcessorTest {
+
+  private static final JavaFileObject INTENT_EXTRA = source("intentbuilder.IntentExtra",
+      "package intentbuilder;\n"
+          + "public @interface IntentExtra { String value() default \"\"; }");
+
+  private static final JavaFileObject ACTIVITY = source("android.app.Activity",
+      "package android.app;\n"
+          + "public class Activity {}");
+
+  private static final JavaFileObject PARCELABLE = source("android.os.Parcelable",
+      "package android.os;\n"
+          + "public interface Parcelable {}");
+
+  private static final JavaFileObject CONTEXT = source("android.content.Context",
+      "package android.content;\n"
+          + "public class Context {}");
+
+  private static final JavaFileObject INTENT = source("android.content.Intent",
+      "package android.content;\n"
+          + "public class Intent {}");
+
+  private static final JavaFileObject INTENT_BUILDER = source("intentbuilder.IntentBuilder",
+      "package intentbuilder;\n"
+          + "public class IntentBuilder {}");
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void generatesBuilder() throws IOException {
+    File out = compile(source("com.example.DetailActivity",
+        "package com.example;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "public class DetailActivity extends android.app.Activity {\n"
+            + "  @IntentExtra String userId;\n"
+            + "  @IntentExtra(\"custom_count\") int count;\n"
+            + "  @IntentExtra java.util.ArrayList<Integer> positions;\n"
+            + "}"));
+    String builder = read(new File(out, "com/example/DetailActivityIntentBuilder.java"));
+    assertContains(builder,
+        "public static final String EXTRA_USER_ID = \"com.example.DetailActivity.userId\";");
+    assertContains(builder, "public static final String EXTRA_COUNT = \"custom_count\";");
+    assertContains(builder, ".activity(com.example.DetailActivity.class);");
+    assertContains(builder, "mBuilder.extra(EXTRA_COUNT, value);");
+    assertContains(builder, "mBuilder.extraIntegerList(EXTRA_POSITIONS, value);");
+  }
+
+  @Test
+  public void generatesReader() throws IOException {
+    File out = compile(source("com.example.DetailActivity",
+        "package com.example;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "public class DetailActivity extends android.app.Activity {\n"
+            + "  @IntentExtra long[] ids;\n"
+            + "  @IntentExtra boolean isNew;\n"
+            + "}"));
+    String reader = read(new File(out, "com/example/DetailActivityIntentReader.java"));
+    assertContains(reader,
+        "return mIntent.getLongArrayExtra(DetailActivityIntentBuilder.EXTRA_IDS);");
+    assertContains(reader, "public boolean isNew(boolean defaultValue) {");
+    assertContains(reader, "target.isNew = isNew(target.isNew);");
+  }
+
+  @Test
+  public void castsAmbiguousObjects() throws IOException {
+    File out = compile(source("com.example.DetailActivity",
+        "package com.example;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "public class DetailActivity extends android.app.Activity {\n"
+            + "  static class Both implements android.os.Parcelable, java.io.Serializable {}\n"
+            + "  @IntentExtra Both both;\n"
+            + "}"));
+    String builder = read(new File(out, "com/example/DetailActivityIntentBuilder.java"));
+    assertContains(builder, "mBuilder.extra(EXTRA_BOTH, (android.os.Parcelable) value);");
+  }
+
+  @Test
+  public void castsOnlyWhenNeeded() throws IOException {
+    File out = compile(source("com.example.DetailActivity",
+        "package com.example;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "public class DetailActivity extends android.app.Activity {\n"
+            + "  static class Item implements android.os.Parcelable {}\n"
+            + "  @IntentExtra Item item;\n"
+            + "  @IntentExtra java.io.Serializable raw;\n"
+            + "  @IntentExtra java.util.HashMap<String, Integer> scores;\n"
+            + "}"));
+    String builder = read(new File(out, "com/example/DetailActivityIntentBuilder.java"));
+    assertContains(builder, "mBuilder.extra(EXTRA_ITEM, value);");
+    assertContains(builder, "mBuilder.extra(EXTRA_SCORES, value);");
+    String reader = read(new File(out, "com/example/DetailActivityIntentReader.java"));
+    assertContains(reader,
+        "return mIntent.getSerializableExtra(DetailActivityIntentBuilder.EXTRA_RAW);");
+    assertContains(reader, "  @SuppressWarnings(\"unchecked\")\n"
+        + "  public java.util.HashMap<java.lang.String,java.lang.Integer> scores() {\n"
+        + "    return (java.util.HashMap<java.lang.String,java.lang.Integer>) mIntent");
+    assertFalse(reader, reader.contains("(com.example.DetailActivity.Item)"));
+  }
+
+  /**
+   * Compiles the generated classes against the library and android-all on the test classpath,
+   * failing on any warning, so unchecked or redundant casts in generated code are caught.
+   */
+  @Test
+  public void compilesAgainstLibrary() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    File out = mFolder.newFolder();
+    List<String> options = Arrays.asList("-d", out.getPath(), "-s", out.getPath(),
+        "-classpath", System.getProperty("java.class.path"), "-Xlint:cast,unchecked,rawtypes");
+    JavaFileObject source = source("com.example.DetailActivity",
+        "package com.example;\n"
+            + "import android.os.Parcel;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "import java.util.ArrayList;\n"
+            + "public class DetailActivity extends android.app.Activity {\n"
+            + "  public static class Item implements android.os.Parcelable {\n"
+            + "    public int describeContents() { return 0; }\n"
+            + "    public void writeToParcel(Parcel dest, int flags) {}\n"
+            + "  }\n"
+            + "  public static class Both extends Item implements java.io.Serializable {}\n"
+            + "  @IntentExtra String userId;\n"
+            + "  @IntentExtra int count;\n"
+            + "  @IntentExtra long[] ids;\n"
+            + "  @IntentExtra CharSequence title;\n"
+            + "  @IntentExtra android.os.Bundle args;\n"
+            + "  @IntentExtra Item item;\n"
+            + "  @IntentExtra Both both;\n"
+            + "  @IntentExtra android.os.Parcelable[] parcels;\n"
+            + "  @IntentExtra ArrayList<Item> items;\n"
+            + "  @IntentExtra ArrayList<Integer> positions;\n"
+            + "  @IntentExtra java.io.Serializable raw;\n"
+            + "  @IntentExtra java.util.Date date;\n"
+            + "  @IntentExtra StringBuilder text;\n"
+            + "  @IntentExtra java.util.HashMap<String, java.util.List<Integer>> scores;\n"
+            + "}");
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+        Arrays.asList(source));
+    task.setProcessors(Arrays.asList(new IntentExtraProcessor()));
+    boolean success = task.call();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      assertTrue(diagnostic.toString(), diagnostic.getKind() == Diagnostic.Kind.NOTE);
+    }
+    assertTrue(success);
+    assertTrue(new File(out, "com/example/DetailActivityIntentBuilder.class").exists());
+    assertTrue(new File(out, "com/example/DetailActivityIntentReader.class").exists());
+    String builder = read(new File(out, "com/example/DetailActivityIntentBuilder.java"));
+    assertContains(builder, "mBuilder.extra(EXTRA_BOTH, (android.os.Parcelable) value);");
+    assertContains(builder, "mBuilder.extra(EXTRA_TEXT, (java.io.Serializable) value);");
+  }
+
+  @Test
+  public void rejectsPrivateField() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    run(diagnostics, source("com.example.DetailActivity",
+        "package com.example;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "public class DetailActivity extends android.app.Activity {\n"
+            + "  @IntentExtra private String userId;\n"
+            + "}"));
+    assertError(diagnostics, "must not be private, static or final");
+  }
+
+  @Test
+  public void rejectsNonComponent() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    run(diagnostics, source("com.example.Plain",
+        "package com.example;\n"
+            + "import intentbuilder.IntentExtra;\n"
+            + "public class Plain {\n"
+            + "  @IntentExtra String userId;\n"
+            + "}"));
+    assertError(diagnostics, "Activity, Service or BroadcastReceiver");
+  }
+
+  // //////////////////////
+  // Util
+  // //////////////////////
+
+  private File compile(JavaFileObject source) throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    File out = run(diagnostics, source);
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      assertFalse(diagnostic.toString(), diagnostic.getKind() == Diagnostic.Kind.ERROR);
+    }
+    return out;
+  }
+
+  private File run(DiagnosticCollector<JavaFileObject> diagnostics, JavaFileObject source)
+      throws IOException {
+    File out = mFolder.newFolder();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> options = Arrays.asList("-proc:only", "-s", out.getPath());
+    JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+        Arrays.asList(INTENT_EXTRA, INTENT_BUILDER, ACTIVITY, CONTEXT, INTENT, PARCELABLE, source));
+    task.setProcessors(Arrays.asList(new IntentExtraProcessor()));
+    task.call();
+    return out;
+  }
+
+  private static void assertError(DiagnosticCollector<JavaFileObject> diagnostics,
+      String message) {
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR
+          && diagnostic.getMessage(null).contains(message)) {
+        return;
+      }
+    }
+    throw new AssertionError("No error containing '" + message + "' in "
+        + diagnostics.getDiagnostics());
+  }
+
+  private static void assertContains(String code, String expected) {
+    assertTrue("Expected <" + expected + "> in:\n" + code, code.contains(expected));
+  }
+
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+  }
+
+  private static JavaFileObject source(String name, final String code) {
+    URI uri = URI.create("string:///" + name.replace('.', '/') + ".java");
+    return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return code;
+      }
+    };
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.ComponentName;
+import android.content.Context;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of {@link ComponentName}s, so building an explicit intent for the same
+ * component again allocates nothing. Lookups take no lock. Components for a class are keyed on
+ * the class name, so a class loader is never held; components looked up by an arbitrary class
+ * name are bounded, and a full cache drops an arbitrary entry instead of tracking use on reads.
+ * <p>
+ * Call {@link #init(Context)} once, e.g. from {@code Application.onCreate()}, to let
+ * {@link IntentBuilder#activity(Class)}, {@link IntentBuilder#service(Class)} and
+ * {@link IntentBuilder#receiver(Class)} work without a Context.
+ */
+public final class ComponentCache {
+
+  private static volatile String sPackageName;
+
+  // Both maps are keyed on the class name alone so that a hit allocates nothing; a hit for
+  // another package is treated as a miss and replaces the entry. Loaded classes are finite, so
+  // sByClass needs no bound.
+  private static final ConcurrentHashMap<String, ComponentName> sByClass =
+      new ConcurrentHashMap<>();
+
+  static final int MAX_NAMES = 256;
+
+  private static final ConcurrentHashMap<String, ComponentName> sByName =
+      new ConcurrentHashMap<>();
+
+  private ComponentCache() {
+  }
+
+  /**
+   * Remembers the application package name for components given only by class.
+   */
+  public static void init(Context context) {
+    PreConditions.validateNotNull(context, "Context");
+    sPackageName = context.getPackageName();
+    ValidationPolicy.detectDebuggable(context);
+  }
+
+  /**
+   * Returns the component for {@code cls} in the package given to {@link #init(Context)}.
+   */
+  public static ComponentName get(Class<?> cls) {
+    String packageName = sPackageName;
+    if (packageName == null) {
+      throw new IllegalStateException("Call ComponentCache.init() first");
+    }
+    return get(packageName, cls);
+  }
+
+  public static ComponentName get(String packageName, Class<?> cls) {
+    PreConditions.validateNotBlank(packageName, "PackageName");
+    PreConditions.validateNotNull(cls, "Class<?>");
+    return lookup(packageName, cls);
+  }
+
+  public static ComponentName get(String packageName, String className) {
+    PreConditions.validateNotBlank(packageName, "PackageName");
+    PreConditions.validateNotBlank(className, "ClassName");
+    return lookup(packageName, className);
+  }
+
+  /**
+   * Like {@link #get(String, Class)} without validation, for {@link IntentBuilder}, which has
+   * already validated the arguments according to its own policy.
+   */
+  static ComponentName lookup(String packageName, Class<?> cls) {
+    String className = cls.getName();
+    ComponentName component = sByClass.get(className);
+    if (component == null || !component.getPackageName().equals(packageName)) {
+      component = lookup(packageName, className);
+      sByClass.put(className, component);
+    }
+    return component;
+  }
+
+  static ComponentName lookup(String packageName, String className) {
+    ComponentName component = sByName.get(className);
+    if (component == null || !component.getPackageName().equals(packageName)) {
+      if (component == null) {
+        evictName();
+      }
+      component = new ComponentName(packageName, className);
+      sByName.put(className, component);
+    }
+    return component;
+  }
+
+  private static void evictName() {
+    Iterator<String> names = sByName.keySet().iterator();
+    while (sByName.size() >= MAX_NAMES && names.hasNext()) {
+      names.next();
+      names.remove();
+    }
+  }
+
+  static int namesSize() {
+    return sByName.size();
+  }
+
+  static String packageName() {
+    return sPackageName;
+  }
+
+  static void reset() {
+    sPackageName = null;
+    sByClass.clear();
+    sByName.clear();
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.net.Uri;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps deep link URIs to {@link IntentTemplate}s.
+ * <p>
+ * Patterns look like {@code https://example.com/items/{id}/reviews?sort={order}}: a literal
+ * scheme and host, path segments that are either literal or a {@code {placeholder}}, and optional
+ * query keys bound to placeholders. Patterns are compiled into a trie keyed by scheme and host,
+ * then by path segment, so a lookup costs one hash probe per segment however many routes are
+ * registered. Literal segments win over placeholders. Placeholders and query values present in
+ * the URI are bound as String extras by {@link Match#builder()}.
+ * <p>
+ * Register every route before matching; lookups may then run on any number of threads.
+ */
+public class DeepLinkRouter {
+
+  private final HashMap<String, Node> mRoots = new HashMap<>();
+  private int mSize;
+
+  public DeepLinkRouter register(String pattern, IntentTemplate template) {
+    PreConditions.validateNotBlank(pattern, "Pattern");
+    PreConditions.validateNotNull(template, "IntentTemplate");
+    Parsed parsed = Parsed.of(pattern);
+    if (parsed == null) {
+      throw new IllegalArgumentException("Pattern must be scheme://host/path: " + pattern);
+    }
+    ArrayList<String> names = new ArrayList<>();
+    Node node = mRoots.get(parsed.mRoot);
+    if (node == null) {
+      node = new Node();
+      mRoots.put(parsed.mRoot, node);
+    }
+    for (String segment : parsed.mSegments) {
+      String name = placeholder(segment);
+      if (name == null) {
+        node = node.literal(segment);
+      } else {
+        addName(names, name, pattern);
+        if (node.mPlaceholder == null) {
+          node.mPlaceholder = new Node();
+        }
+        node = node.mPlaceholder;
+      }
+    }
+    if (node.mRoute != null) {
+      throw new IllegalArgumentException(
+          "Pattern " + pattern + " conflicts with " + node.mRoute.mPattern);
+    }
+    LinkedHashMap<String, String> query = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : parsed.mQuery.entrySet()) {
+      String name = placeholder(entry.getValue());
+      if (name == null) {
+        throw new IllegalArgumentException("Query value must be a {placeholder}: " + pattern);
+      }
+      addName(names, name, pattern);
+      query.put(entry.getKey(), name);
+    }
+    node.mRoute = new Route(pattern, template, names, query);
+    mSize++;
+    return this;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  /**
+   * Returns the route matching {@code uri} and its bound placeholders, or null. Needs no Android
+   * runtime.
+   */
+  public Match match(String uri) {
+    PreConditions.validateNotNull(uri, "Uri");
+    Parsed parsed = Parsed.of(uri);
+    if (parsed == null) {
+      return null;
+    }
+    Node root = mRoots.get(parsed.mRoot);
+    if (root == null) {
+      return null;
+    }
+    String[] values = new String[parsed.mSegments.size()];
+    Node node = find(root, parsed.mSegments, 0, values, 0);
+    if (node == null) {
+      return null;
+    }
+    Route route = node.mRoute;
+    Map<String, String> params = new LinkedHashMap<>();
+    for (int i = 0; i < route.mNames.size() - route.mQuery.size(); i++) {
+      params.put(route.mNames.get(i), values[i]);
+    }
+    for (Map.Entry<String, String> entry : route.mQuery.entrySet()) {
+      String value = parsed.mQuery.get(entry.getKey());
+      if (value != null) {
+        params.put(entry.getValue(), value);
+      }
+    }
+    return new Match(uri, route, params);
+  }
+
+  /**
+   * Shortcut for {@code match(uri).builder()}, or null if nothing matches.
+   */
+  public IntentBuilder route(String uri) {
+    Match match = match(uri);
+    return match == null ? null : match.builder();
+  }
+
+  /**
+   * Depth-first, literal children before the placeholder, so {@code /items/new} beats
+   * {@code /items/{id}} but {@code /items/new/edit} can still fall back to {@code /items/{id}/edit}.
+   */
+  private static Node find(Node node, List<String> segments, int index, String[] values,
+      int bound) {
+    if (index == segments.size()) {
+      return node.mRoute != null ? node : null;
+    }
+    String segment = segments.get(index);
+    if (node.mLiterals != null) {
+      Node literal = node.mLiterals.get(segment);
+      if (literal != null) {
+        Node found = find(literal, segments, index + 1, values, bound);
+        if (found != null) {
+          return found;
+        }
+      }
+    }
+    if (node.mPlaceholder != null) {
+      values[bound] = segment;
+      return find(node.mPlaceholder, segments, index + 1, values, bound + 1);
+    }
+    return null;
+  }
+
+  private static String placeholder(String segment) {
+    int length = segment.length();
+    if (length > 2 && segment.charAt(0) == '{' && segment.charAt(length - 1) == '}') {
+      return segment.substring(1, length - 1);
+    }
+    return null;
+  }
+
+  private static void addName(List<String> names, String name, String pattern) {
+    if (names.contains(name)) {
+      throw new IllegalArgumentException("Duplicate placeholder {" + name + "} in " + pattern);
+    }
+    names.add(name);
+  }
+
+  /**
+   * A matched URI.
+   */
+  public static final class Match {
+    private final String mUri;
+    private final Route mRoute;
+    private final Map<String, String> mParams;
+
+    Match(String uri, Route route, Map<String, String> params) {
+      mUri = uri;
+      mRoute = route;
+      mParams = Collections.unmodifiableMap(params);
+    }
+
+    public String uri() {
+      return mUri;
+    }
+
+    public String pattern() {
+      return mRoute.mPattern;
+    }
+
+    public IntentTemplate template() {
+      return mRoute.mTemplate;
+    }
+
+    /**
+     * Placeholder names to their decoded values.
+     */
+    public Map<String, String> params() {
+      return mParams;
+    }
+
+    /**
+     * A builder from the route's template with the URI as data and every bound placeholder as a
+     * String extra.
+     */
+    public IntentBuilder builder() {
+      IntentBuilder builder = mRoute.mTemplate.with().data(Uri.parse(mUri));
+      for (Map.Entry<String, String> param : mParams.entrySet()) {
+        builder.extra(param.getKey(), param.getValue());
+      }
+      return builder;
+    }
+  }
+
+  // //////////////////////
+  // Trie
+  // //////////////////////
+
+  private static final class Node {
+    HashMap<String, Node> mLiterals;
+    Node mPlaceholder;
+    Route mRoute;
+
+    Node literal(String segment) {
+      if (mLiterals == null) {
+        mLiterals = new HashMap<>(4);
+      }
+      Node child = mLiterals.get(segment);
+      if (child == null) {
+        child = new Node();
+        mLiterals.put(segment, child);
+      }
+      return child;
+    }
+  }
+
+  private static final class Route {
+    final String mPattern;
+    final IntentTemplate mTemplate;
+    // Path placeholders in order, then query placeholders.
+    final List<String> mNames;
+    // Query key to placeholder name.
+    final Map<String, String> mQuery;
+
+    Route(String pattern, IntentTemplate template, List<String> names,
+        Map<String, String> query) {
+      mPattern = pattern;
+      mTemplate = template;
+      mNames = names;
+      mQuery = query;
+    }
+  }
+
+  // //////////////////////
+  // Parsing
+  // //////////////////////
+
+  /**
+   * Minimal hierarchical URI split, done by hand so matching works without android.net.Uri.
+   */
+  private static final class Parsed {
+    // Lower case "scheme://host", port and user info dropped.
+    String mRoot;
+    final ArrayList<String> mSegments = new ArrayList<>();
+    final LinkedHashMap<String, String> mQuery = new LinkedHashMap<>();
+
+    static Parsed of(String uri) {
+      int schemeEnd = uri.indexOf("://");
+      if (schemeEnd < 1) {
+        return null;
+      }
+      int fragment = uri.indexOf('#');
+      int end = fragment < 0 ? uri.length() : fragment;
+      int query = uri.indexOf('?');
+      if (query > end) {
+        query = -1;
+      }
+      int pathEnd = query < 0 ? end : query;
+      int authorityStart = schemeEnd + 3;
+      int path = uri.indexOf('/', authorityStart);
+      if (path < 0 || path > pathEnd) {
+        path = pathEnd;
+      }
+      String host = uri.substring(authorityStart, path);
+      int at = host.lastIndexOf('@');
+      if (at >= 0) {
+        host = host.substring(at + 1);
+      }
+      int port = host.lastIndexOf(':');
+      if (port >= 0 && host.indexOf(']', port) < 0) {
+        host = host.substring(0, port);
+      }
+      Parsed parsed = new Parsed();
+      parsed.mRoot = (uri.substring(0, schemeEnd) + "://" + host).toLowerCase(Locale.US);
+      int start = path + 1;
+      while (start <= pathEnd) {
+        int slash = uri.indexOf('/', start);
+        int segmentEnd = slash < 0 || slash > pathEnd ? pathEnd : slash;
+        if (segmentEnd > start) {
+          parsed.mSegments.add(decode(uri.substring(start, segmentEnd), false));
+        }
+        start = segmentEnd + 1;
+      }
+      if (query >= 0) {
+        for (String pair : uri.substring(query + 1, end).split("&")) {
+          if (pair.length() == 0) {
+            continue;
+          }
+          int equals = pair.indexOf('=');
+          String key = decode(equals < 0 ? pair : pair.substring(0, equals), true);
+          String value = equals < 0 ? "" : decode(pair.substring(equals + 1), true);
+          if (!parsed.mQuery.containsKey(key)) {
+            parsed.mQuery.put(key, value);
+          }
+        }
+      }
+      return parsed;
+    }
+
+    private static String decode(String value, boolean query) {
+      if (value.indexOf('%') < 0 && (!query || value.indexOf('+') < 0)) {
+        return value;
+      }
+      try {
+        // URLDecoder turns '+' into a space, which only applies to the query.
+        return URLDecoder.decode(query ? value : value.replace("+", "%2B"), "UTF-8");
+      } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+        return value;
+      }
+    }
+  }
+}
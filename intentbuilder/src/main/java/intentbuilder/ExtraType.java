@@ -0,0 +1,436 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Every kind of extra {@link IntentBuilder} can write. Primitive values travel as raw bits in a
+ * {@code long} so they can be recorded and replayed without boxing; everything else travels as
+ * {@code value}.
+ */
+@SuppressWarnings("unchecked")
+enum ExtraType {
+
+  // //////////////////////
+  // Primitives
+  // //////////////////////
+
+  BOOLEAN {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, bits != 0);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putBoolean(name, bits != 0);
+    }
+  },
+
+  BYTE {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (byte) bits);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putByte(name, (byte) bits);
+    }
+  },
+
+  CHAR {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (char) bits);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putChar(name, (char) bits);
+    }
+  },
+
+  DOUBLE {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, Double.longBitsToDouble(bits));
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putDouble(name, Double.longBitsToDouble(bits));
+    }
+  },
+
+  FLOAT {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, Float.intBitsToFloat((int) bits));
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putFloat(name, Float.intBitsToFloat((int) bits));
+    }
+  },
+
+  INT {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (int) bits);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putInt(name, (int) bits);
+    }
+  },
+
+  LONG {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, bits);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putLong(name, bits);
+    }
+  },
+
+  SHORT {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (short) bits);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putShort(name, (short) bits);
+    }
+  },
+
+  STRING {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (String) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putString(name, (String) value);
+    }
+  },
+
+  // //////////////////////
+  // Primitive arrays
+  // //////////////////////
+
+  BOOLEAN_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (boolean[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putBooleanArray(name, (boolean[]) value);
+    }
+  },
+
+  BYTE_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (byte[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putByteArray(name, (byte[]) value);
+    }
+  },
+
+  CHAR_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (char[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putCharArray(name, (char[]) value);
+    }
+  },
+
+  DOUBLE_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (double[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putDoubleArray(name, (double[]) value);
+    }
+  },
+
+  FLOAT_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (float[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putFloatArray(name, (float[]) value);
+    }
+  },
+
+  INT_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (int[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putIntArray(name, (int[]) value);
+    }
+  },
+
+  LONG_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (long[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putLongArray(name, (long[]) value);
+    }
+  },
+
+  SHORT_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (short[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putShortArray(name, (short[]) value);
+    }
+  },
+
+  // //////////////////////
+  // Objects
+  // //////////////////////
+
+  BUNDLE {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Bundle) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putBundle(name, (Bundle) value);
+    }
+  },
+
+  CHAR_SEQUENCE {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (CharSequence) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putCharSequence(name, (CharSequence) value);
+    }
+  },
+
+  PARCELABLE {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Parcelable) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putParcelable(name, (Parcelable) value);
+    }
+  },
+
+  SERIALIZABLE {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Serializable) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putSerializable(name, (Serializable) value);
+    }
+  },
+
+  // //////////////////////
+  // Object collections
+  // //////////////////////
+
+  CHAR_SEQUENCE_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (CharSequence[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putCharSequenceArray(name, (CharSequence[]) value);
+    }
+  },
+
+  PARCELABLE_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Parcelable[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putParcelableArray(name, (Parcelable[]) value);
+    }
+  },
+
+  STRING_ARRAY {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (String[]) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putStringArray(name, (String[]) value);
+    }
+  },
+
+  CHAR_SEQUENCE_LIST {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Serializable) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putCharSequenceArrayList(name, (ArrayList<CharSequence>) value);
+    }
+  },
+
+  INTEGER_LIST {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Serializable) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putIntegerArrayList(name, (ArrayList<Integer>) value);
+    }
+  },
+
+  PARCELABLE_LIST {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Serializable) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putParcelableArrayList(name, (ArrayList<? extends Parcelable>) value);
+    }
+  },
+
+  STRING_LIST {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtra(name, (Serializable) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putStringArrayList(name, (ArrayList<String>) value);
+    }
+  },
+
+  // //////////////////////
+  // Whole bundles
+  // //////////////////////
+
+  /** Merges every mapping of the {@link Bundle} in {@code value}; {@code name} is ignored. */
+  ALL {
+    @Override void put(Intent intent, String name, long bits, Object value) {
+      intent.putExtras((Bundle) value);
+    }
+
+    @Override void put(Bundle bundle, String name, long bits, Object value) {
+      bundle.putAll((Bundle) value);
+    }
+  };
+
+  abstract void put(Intent intent, String name, long bits, Object value);
+
+  abstract void put(Bundle bundle, String name, long bits, Object value);
+
+  /**
+   * Returns the type a value of unknown static type is written as, or {@code null} if it cannot
+   * be an extra. Arrays of a more specific type win, e.g. a {@code String[]} is
+   * {@link #STRING_ARRAY}. An {@link ArrayList} is typed by its first non-null element and is
+   * {@link #SERIALIZABLE} when that gives no answer.
+   */
+  static ExtraType of(Object value) {
+    if (value instanceof Boolean) {
+      return BOOLEAN;
+    } else if (value instanceof Byte) {
+      return BYTE;
+    } else if (value instanceof Character) {
+      return CHAR;
+    } else if (value instanceof Double) {
+      return DOUBLE;
+    } else if (value instanceof Float) {
+      return FLOAT;
+    } else if (value instanceof Integer) {
+      return INT;
+    } else if (value instanceof Long) {
+      return LONG;
+    } else if (value instanceof Short) {
+      return SHORT;
+    } else if (value instanceof String) {
+      return STRING;
+    } else if (value instanceof boolean[]) {
+      return BOOLEAN_ARRAY;
+    } else if (value instanceof byte[]) {
+      return BYTE_ARRAY;
+    } else if (value instanceof char[]) {
+      return CHAR_ARRAY;
+    } else if (value instanceof double[]) {
+      return DOUBLE_ARRAY;
+    } else if (value instanceof float[]) {
+      return FLOAT_ARRAY;
+    } else if (value instanceof int[]) {
+      return INT_ARRAY;
+    } else if (value instanceof long[]) {
+      return LONG_ARRAY;
+    } else if (value instanceof short[]) {
+      return SHORT_ARRAY;
+    } else if (value instanceof Bundle) {
+      return BUNDLE;
+    } else if (value instanceof String[]) {
+      return STRING_ARRAY;
+    } else if (value instanceof CharSequence[]) {
+      return CHAR_SEQUENCE_ARRAY;
+    } else if (value instanceof Parcelable[]) {
+      return PARCELABLE_ARRAY;
+    } else if (value instanceof CharSequence) {
+      return CHAR_SEQUENCE;
+    } else if (value instanceof Parcelable) {
+      return PARCELABLE;
+    } else if (value instanceof ArrayList) {
+      return ofList((ArrayList<?>) value);
+    } else if (value instanceof Serializable) {
+      return SERIALIZABLE;
+    }
+    return null;
+  }
+
+  private static ExtraType ofList(ArrayList<?> list) {
+    for (int i = 0, size = list.size(); i < size; i++) {
+      Object element = list.get(i);
+      if (element instanceof Integer) {
+        return INTEGER_LIST;
+      } else if (element instanceof String) {
+        return STRING_LIST;
+      } else if (element instanceof CharSequence) {
+        return CHAR_SEQUENCE_LIST;
+      } else if (element instanceof Parcelable) {
+        return PARCELABLE_LIST;
+      } else if (element != null) {
+        return SERIALIZABLE;
+      }
+    }
+    // Empty or all null: any list type writes it the same way.
+    return STRING_LIST;
+  }
+}
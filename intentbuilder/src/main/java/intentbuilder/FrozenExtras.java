@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.os.Bundle;
+import android.os.Parcel;
+
+import java.util.Map;
+
+/**
+ * Extras marshalled once, for sending the same payload to many targets with
+ * {@link IntentBuilder#sharedExtras(FrozenExtras)}.
+ * <p>
+ * {@link #newBundle()} reads the bytes back with {@link Parcel#readBundle(ClassLoader)}, which
+ * leaves the bundle in its parcelled form: copying it into an intent and sending it copies the
+ * bytes as they are instead of walking and re-marshalling every value. Reading any extra from that
+ * bundle, or adding one to the intent, unparcels it and loses the benefit, so add per-target
+ * extras with care. Safe to use from multiple threads.
+ */
+public class FrozenExtras {
+
+  private final byte[] mData;
+  private final Map<String, Integer> mSizes;
+  private final ClassLoader mLoader;
+
+  public FrozenExtras(Bundle extras) {
+    this(extras, FrozenExtras.class.getClassLoader());
+  }
+
+  /**
+   * @param loader used to instantiate Parcelable values when the bundle is unparcelled
+   */
+  public FrozenExtras(Bundle extras, ClassLoader loader) {
+    PreConditions.validateNotNull(extras, "Extras bundle");
+    PreConditions.validateNotNull(loader, "ClassLoader");
+    SizeEstimator sizes = new SizeEstimator();
+    sizes.addAll(extras);
+    mSizes = sizes.sizes();
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.writeBundle(extras);
+      mData = parcel.marshall();
+    } finally {
+      parcel.recycle();
+    }
+    mLoader = loader;
+  }
+
+  /**
+   * Size in bytes of the marshalled bundle.
+   */
+  public int sizeBytes() {
+    return mData.length;
+  }
+
+  /**
+   * Returns a new, still parcelled bundle holding the frozen extras.
+   */
+  public Bundle newBundle() {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.unmarshall(mData, 0, mData.length);
+      parcel.setDataPosition(0);
+      return parcel.readBundle(mLoader);
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  /**
+   * Estimated size per extra, as reported by {@link IntentBuilder#estimatedExtraSizes()}.
+   */
+  Map<String, Integer> sizes() {
+    return mSizes;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of {@code int} values, for building {@code int[]} extras without boxing. Pass it
+ * to {@link IntentBuilder#extra(String, IntList)}, and read the extra back as one with
+ * {@link IntentReader#getIntList(String)}.
+ */
+public final class IntList {
+
+  private static final int[] EMPTY = new int[0];
+  private static final int MIN_GROWTH = 8;
+
+  private int[] mValues;
+  private int mSize;
+
+  public IntList() {
+    mValues = EMPTY;
+  }
+
+  public IntList(int capacity) {
+    PreConditions.validatePositive(capacity, "Capacity");
+    mValues = new int[capacity];
+  }
+
+  private IntList(int[] values) {
+    mValues = values;
+    mSize = values.length;
+  }
+
+  /**
+   * Returns a list backed by {@code values}: writes through {@link #set(int, int)} show in the
+   * array until the list has to grow.
+   */
+  public static IntList wrap(int[] values) {
+    PreConditions.validateNotNull(values, "Values");
+    return new IntList(values);
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public boolean isEmpty() {
+    return mSize == 0;
+  }
+
+  public int get(int index) {
+    checkIndex(index);
+    return mValues[index];
+  }
+
+  public void set(int index, int value) {
+    checkIndex(index);
+    mValues[index] = value;
+  }
+
+  public void add(int value) {
+    ensureCapacity(mSize + 1);
+    mValues[mSize++] = value;
+  }
+
+  public void addAll(int[] values) {
+    PreConditions.validateNotNull(values, "Values");
+    ensureCapacity(mSize + values.length);
+    System.arraycopy(values, 0, mValues, mSize, values.length);
+    mSize += values.length;
+  }
+
+  public void ensureCapacity(int capacity) {
+    if (capacity > mValues.length) {
+      int grown = mValues.length + Math.max(mValues.length >> 1, MIN_GROWTH);
+      int[] values = new int[Math.max(capacity, grown)];
+      System.arraycopy(mValues, 0, values, 0, mSize);
+      mValues = values;
+    }
+  }
+
+  public void clear() {
+    mSize = 0;
+  }
+
+  /**
+   * Returns a new array holding exactly the values of this list.
+   */
+  public int[] toArray() {
+    int[] values = new int[mSize];
+    System.arraycopy(mValues, 0, values, 0, mSize);
+    return values;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof IntList)) {
+      return false;
+    }
+    IntList other = (IntList) o;
+    if (mSize != other.mSize) {
+      return false;
+    }
+    for (int i = 0; i < mSize; i++) {
+      if (mValues[i] != other.mValues[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < mSize; i++) {
+      result = 31 * result + mValues[i];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mSize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+    }
+  }
+}
@@ -31,6 +31,7 @@ import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -38,16 +39,44 @@ import android.os.Parcelable;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-
-import static intentbuilder.PreConditions.validateContext;
-import static intentbuilder.PreConditions.validateNotBlank;
-import static intentbuilder.PreConditions.validateNotEmpty;
-import static intentbuilder.PreConditions.validateNotNull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 public class IntentBuilder {
 
+  private static final int MAX_POOL_SIZE = 16;
+  private static final int DEFAULT_SIZE_HINT = 10;
+  private static final Object sPoolSync = new Object();
+  private static IntentBuilder sPool;
+  private static int sPoolSize = 0;
+
   private Intent mIntent;
   private Context mContext;
+  private OperationLog mLog;
+  private SizeEstimator mSizes;
+  private Spill mSpill;
+  private ValidationPolicy mPolicy = ValidationPolicy.STRICT;
+  private ValidationResult mResult;
+  // Set by a failed check in collecting mode, cleared by rejected().
+  private boolean mRejected;
+  private ArrayList<String> mAsyncNames;
+  private ArrayList<Callable<?>> mAsyncProducers;
+
+  // Snapshot a fork copies from on first write; mIntent stays null until then, so read it
+  // through intent() and write it through mutate().
+  private Intent mBase;
+  // Snapshot handed to forks, shared by all of them until this builder changes.
+  private Intent mForkBase;
+
+  // True once mIntent is visible outside the builder, so it must not be cleared in place.
+  private boolean mShared;
+  private boolean mInPool;
+  private IntentBuilder mNext;
 
   // //////////////////////
   // Constructors
@@ -59,6 +88,7 @@ public class IntentBuilder {
 
   public IntentBuilder(Intent intent) {
     mIntent = intent;
+    mShared = true;
   }
 
   public IntentBuilder(String action) {
@@ -77,18 +107,246 @@ public class IntentBuilder {
     mIntent = new Intent(action, uri, packageContext, cls);
   }
 
+  private IntentBuilder(IntentBuilder parent, Intent base) {
+    mBase = base;
+    mContext = parent.mContext;
+    mSpill = parent.mSpill;
+    mPolicy = parent.mPolicy;
+    if (parent.mResult != null) {
+      // Forks are often finished on other threads, so each collects into its own result.
+      mResult = new ValidationResult();
+      mResult.addAll(parent.mResult);
+    }
+    if (parent.mLog != null) {
+      mLog = new OperationLog();
+    }
+    if (parent.mAsyncNames != null) {
+      mAsyncNames = new ArrayList<>(parent.mAsyncNames);
+      mAsyncProducers = new ArrayList<>(parent.mAsyncProducers);
+    }
+  }
+
+  /**
+   * Returns a builder whose intent holds everything described by {@code spec}.
+   */
+  public static IntentBuilder from(IntentSpec spec) {
+    PreConditions.validateNotNull(spec, "IntentSpec");
+    IntentBuilder builder = new IntentBuilder();
+    spec.applyTo(builder.mIntent);
+    return builder;
+  }
+
+  // //////////////////////
+  // Pool
+  // //////////////////////
+
+  /**
+   * Returns an empty builder from the pool, or a new one if the pool is empty. Hand it back with
+   * {@link #recycle()} once the intent has been built.
+   */
+  public static IntentBuilder obtain() {
+    synchronized (sPoolSync) {
+      if (sPool != null) {
+        IntentBuilder builder = sPool;
+        sPool = builder.mNext;
+        builder.mNext = null;
+        builder.mInPool = false;
+        sPoolSize--;
+        return builder;
+      }
+    }
+    return new IntentBuilder();
+  }
+
+  /**
+   * Resets this builder, including its deferred mode, validation, size budget and spill settings,
+   * and returns it to the pool. The builder must not be used afterwards. Intents previously
+   * returned by {@link #build()} are not affected.
+   */
+  public void recycle() {
+    if (mInPool) {
+      throw new IllegalStateException("This IntentBuilder has already been recycled");
+    }
+    reset();
+    mLog = null;
+    mSizes = null;
+    mSpill = null;
+    mPolicy = ValidationPolicy.STRICT;
+    mResult = null;
+    mRejected = false;
+    synchronized (sPoolSync) {
+      if (sPoolSize < MAX_POOL_SIZE) {
+        mInPool = true;
+        mNext = sPool;
+        sPool = this;
+        sPoolSize++;
+      }
+    }
+  }
+
+  /**
+   * Clears action, data, type, flags, categories, component, package, extras and context. An
+   * intent already returned by {@link #build()} or passed to the constructor is left untouched
+   * and replaced by a new one.
+   */
+  public IntentBuilder reset() {
+    if (mShared || mIntent == null) {
+      mIntent = new Intent();
+      mShared = false;
+    } else {
+      clear(mIntent);
+    }
+    mBase = null;
+    mForkBase = null;
+    if (mLog != null) {
+      mLog.clear();
+    }
+    mAsyncNames = null;
+    mAsyncProducers = null;
+    if (mSizes != null) {
+      mSizes.clear();
+    }
+    mContext = null;
+    return this;
+  }
+
+  /**
+   * Sets the validation policy for this builder. Checks disabled by the process-wide policy in
+   * {@link ValidationPolicy} stay disabled.
+   */
+  public IntentBuilder validation(ValidationPolicy policy) {
+    PreConditions.validateNotNull(policy, "ValidationPolicy");
+    mPolicy = policy;
+    return this;
+  }
+
+  /**
+   * Collects validation failures into {@code result} instead of throwing them. A call that fails
+   * validation is recorded and otherwise ignored, and {@link #tryBuild()} then returns null.
+   * {@link #buildAsync(Executor)} and {@link #buildResolved} still throw on bad arguments. Pass
+   * null to throw again.
+   */
+  public IntentBuilder validateInto(ValidationResult result) {
+    mResult = result;
+    mRejected = false;
+    return this;
+  }
+
+  /**
+   * Returns the result validation failures are collected into, or null if they are thrown.
+   */
+  public ValidationResult validationResult() {
+    return mResult;
+  }
+
+  /**
+   * Limits the estimated marshalled size of the extras. Crossing the budget throws an
+   * {@link IllegalStateException} from the offending call when {@code failFast} is set, and
+   * logs a single warning otherwise. Keep it well under the binder transaction limit (1MB,
+   * shared by every transaction in flight in the process).
+   */
+  public IntentBuilder sizeBudget(int maxBytes, boolean failFast) {
+    validatePositive(maxBytes, "Size budget");
+    if (rejected()) {
+      return this;
+    }
+    sizes().budget(maxBytes, failFast);
+    return this;
+  }
+
+  /**
+   * Estimated size of the extras once marshalled into a {@link android.os.Parcel}. Extras are
+   * measured as they are added, so only the first call has to look at extras that were already
+   * on the intent.
+   */
+  public int estimatedSizeBytes() {
+    return sizes().total();
+  }
+
+  /**
+   * Estimated marshalled size of each extra, key included, in insertion order.
+   */
+  public Map<String, Integer> estimatedExtraSizes() {
+    return sizes().sizes();
+  }
+
+  /**
+   * Spills {@code byte[]}, Serializable and Parcelable extras larger than the threshold of
+   * {@code spill} to a file, putting a {@link SpillHandle} in the intent instead. Read them back
+   * with {@link IntentReader}.
+   */
+  public IntentBuilder spill(Spill spill) {
+    validateNotNull(spill, "Spill");
+    if (rejected()) {
+      return this;
+    }
+    mSpill = spill;
+    return this;
+  }
+
+  /**
+   * Records flags, categories and extras instead of writing them to the intent right away.
+   * {@link #build()} then applies them in a single pass: flags OR-ed into one value, categories
+   * deduplicated and extras copied into one bundle created at its final size. Values are
+   * captured by reference, not copied.
+   */
+  public IntentBuilder deferred() {
+    if (mLog == null) {
+      mLog = new OperationLog();
+    }
+    return this;
+  }
+
+  /**
+   * Hints how many extras will be added. Implies {@link #deferred()}, with the log already sized
+   * for {@code count} extras so neither it nor the final bundle has to grow.
+   */
+  public IntentBuilder expectedExtras(int count) {
+    validatePositive(count, "Expected extras");
+    if (rejected()) {
+      return this;
+    }
+    if (mLog == null) {
+      mLog = new OperationLog(count);
+    } else {
+      mLog.ensureCapacity(count);
+    }
+    return this;
+  }
+
+  /**
+   * Returns a new builder starting from everything set so far. Forks share one snapshot of this
+   * builder's intent and each copies it on its first write, then writes into that copy directly,
+   * so deriving many variants costs one copy per variant instead of re-applying the common part.
+   * Later changes on either side are not visible to the other. A fork of a
+   * {@link #deferred()} builder is deferred too. A fork of a builder that
+   * {@link #validateInto(ValidationResult) collects} validation failures collects into a new
+   * result of its own, starting with this builder's failures; see {@link #validationResult()}.
+   */
+  public IntentBuilder fork() {
+    flush();
+    if (mForkBase == null) {
+      mForkBase = new Intent(mIntent);
+    }
+    return new IntentBuilder(this, mForkBase);
+  }
+
   // //////////////////////
   // Builder methods
   // //////////////////////
 
   public IntentBuilder context(Context context) {
+    ValidationPolicy.detectDebuggable(context);
     mContext = context;
     return this;
   }
 
   public IntentBuilder action(String action) {
     validateNotBlank(action, "Action");
-    mIntent.setAction(action);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setAction(action);
     return this;
   }
 
@@ -106,27 +364,39 @@ public class IntentBuilder {
 
   public IntentBuilder component(ComponentName component) {
     validateNotNull(component, "ComponentName");
-    mIntent.setComponent(component);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setComponent(component);
     return this;
   }
 
   public IntentBuilder className(Context packageCtx, String className) {
     validateNotNull(packageCtx, "Context");
     validateNotBlank(className, "ClassName");
-    mIntent.setClassName(packageCtx, className);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setComponent(ComponentCache.lookup(packageCtx.getPackageName(), className));
     return this;
   }
 
   public IntentBuilder className(String packageName, String className) {
     validateNotBlank(packageName, "PackageName");
     validateNotBlank(className, "ClassName");
-    mIntent.setClassName(packageName, className);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setComponent(ComponentCache.lookup(packageName, className));
     return this;
   }
 
   public IntentBuilder setPackage(String pack) {
     validateNotBlank(pack, "Package");
-    mIntent.setPackage(pack);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setPackage(pack);
     return this;
   }
 
@@ -136,55 +406,148 @@ public class IntentBuilder {
 
   public IntentBuilder flags(int... flags) {
     validateNotEmpty(flags, "Flags");
+    if (rejected()) {
+      return this;
+    }
+    mForkBase = null;
+    if (mLog != null) {
+      for (int flag : flags) {
+        mLog.addFlags(flag);
+      }
+      return this;
+    }
+    Intent intent = mutate();
     for (int flag : flags) {
-      mIntent.addFlags(flag);
+      intent.addFlags(flag);
     }
     return this;
   }
 
   public IntentBuilder categories(String... categories) {
     validateNotEmpty(categories, "Categories");
+    if (rejected()) {
+      return this;
+    }
+    mForkBase = null;
+    if (mLog != null) {
+      for (String category : categories) {
+        mLog.addCategory(category);
+      }
+      return this;
+    }
+    Intent intent = mutate();
     for (String category : categories) {
-      mIntent.addCategory(category);
+      intent.addCategory(category);
     }
     return this;
   }
 
   public IntentBuilder extras(Bundle extras) {
     validateNotNull(extras, "Extras bundle");
-    mIntent.putExtras(extras);
+    return put(null, ExtraType.ALL, 0, extras);
+  }
+
+  /**
+   * Adds every entry of {@code extras}, each written like the {@code extra(...)} overload matching
+   * its runtime type. An {@link ArrayList} is typed by its first non-null element. A value of an
+   * unsupported type fails validation like any other bad argument.
+   */
+  public IntentBuilder extras(Map<String, ?> extras) {
+    validateNotNull(extras, "Extras map");
+    if (rejected()) {
+      return this;
+    }
+    if (mLog != null) {
+      mLog.ensureCapacity(mLog.extrasSize() + extras.size());
+    }
+    for (Map.Entry<String, ?> entry : extras.entrySet()) {
+      extraValue(entry.getKey(), entry.getValue());
+    }
     return this;
   }
 
   public IntentBuilder extras(Intent intent) {
     validateNotNull(intent, "Intent");
-    mIntent.putExtras(intent);
+    if (rejected()) {
+      return this;
+    }
+    if (mLog != null) {
+      Bundle extras = intent.getExtras();
+      return extras != null ? put(null, ExtraType.ALL, 0, extras) : this;
+    }
+    if (mSizes != null) {
+      mSizes.addAll(intent.getExtras());
+    }
+    mutate().putExtras(intent);
+    return this;
+  }
+
+  /**
+   * Replaces all extras set so far with {@code extras}, without re-marshalling them. Extras added
+   * afterwards are merged in, at the cost of unparcelling the shared payload for this intent.
+   */
+  public IntentBuilder sharedExtras(FrozenExtras extras) {
+    validateNotNull(extras, "FrozenExtras");
+    if (rejected()) {
+      return this;
+    }
+    flush();
+    mutate().replaceExtras(extras.newBundle());
+    if (mSizes != null) {
+      mSizes.clear();
+      mSizes.addSizes(extras.sizes());
+    }
     return this;
   }
 
   public IntentBuilder data(Uri data) {
     validateNotNull(data, "Data Uri");
-    mIntent.setData(data);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setData(data);
     return this;
   }
 
   @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
   public IntentBuilder dataNormalize(Uri data) {
     validateNotNull(data, "Data");
-    mIntent.setDataAndNormalize(data);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setDataAndNormalize(data);
     return this;
   }
 
   public IntentBuilder type(String type) {
     validateNotBlank(type, "Type");
-    mIntent.setType(type);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setType(type);
     return this;
   }
 
   @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
   public IntentBuilder typeNormalize(String type) {
     validateNotBlank(type, "Type");
-    mIntent.setTypeAndNormalize(type);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setTypeAndNormalize(type);
+    return this;
+  }
+
+  /**
+   * Sets both at once; {@link #data(Uri)} and {@link #type(String)} each clear the other.
+   */
+  public IntentBuilder dataAndType(Uri data, String type) {
+    validateNotNull(data, "Data Uri");
+    validateNotBlank(type, "Type");
+    if (rejected()) {
+      return this;
+    }
+    mutate().setDataAndType(data, type);
     return this;
   }
 
@@ -194,57 +557,48 @@ public class IntentBuilder {
 
   public IntentBuilder extra(String name, boolean value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.BOOLEAN, value ? 1 : 0, null);
   }
 
   public IntentBuilder extra(String name, byte value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.BYTE, value, null);
   }
 
   public IntentBuilder extra(String name, char value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.CHAR, value, null);
   }
 
   public IntentBuilder extra(String name, double value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.DOUBLE, Double.doubleToRawLongBits(value), null);
   }
 
   public IntentBuilder extra(String name, float value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.FLOAT, Float.floatToRawIntBits(value), null);
   }
 
   public IntentBuilder extra(String name, int value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.INT, value, null);
   }
 
   public IntentBuilder extra(String name, long value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.LONG, value, null);
   }
 
   public IntentBuilder extra(String name, short value) {
     validateNotBlank(name, "Name");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.SHORT, value, null);
   }
 
   public IntentBuilder extra(String name, String value) {
     validateNotBlank(name, "Name");
     validateNotNull(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.STRING, 0, value);
   }
 
   // //////////////////////
@@ -254,57 +608,80 @@ public class IntentBuilder {
   public IntentBuilder extra(String name, byte[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    if (rejected()) {
+      return this;
+    }
+    SpillHandle handle = mSpill != null ? mSpill.spill(value) : null;
+    if (handle != null) {
+      return put(name, ExtraType.PARCELABLE, 0, handle);
+    }
+    return put(name, ExtraType.BYTE_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, boolean[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.BOOLEAN_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, char[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.CHAR_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, double[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.DOUBLE_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, float[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.FLOAT_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, int[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.INT_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, long[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.LONG_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, short[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.SHORT_ARRAY, 0, value);
+  }
+
+  /**
+   * Writes the values as an {@code int[]} extra, copied once at their exact size and never boxed.
+   */
+  public IntentBuilder extra(String name, IntList value) {
+    validateNotBlank(name, "Name");
+    validateNotEmpty(value, "Value");
+    if (rejected()) {
+      return this;
+    }
+    return put(name, ExtraType.INT_ARRAY, 0, value == null ? null : value.toArray());
+  }
+
+  /**
+   * Writes the values as a {@code long[]} extra, copied once at their exact size and never boxed.
+   */
+  public IntentBuilder extra(String name, LongList value) {
+    validateNotBlank(name, "Name");
+    validateNotEmpty(value, "Value");
+    if (rejected()) {
+      return this;
+    }
+    return put(name, ExtraType.LONG_ARRAY, 0, value == null ? null : value.toArray());
   }
 
   // //////////////////////
@@ -314,29 +691,39 @@ public class IntentBuilder {
   public IntentBuilder extra(String name, Bundle value) {
     validateNotBlank(name, "Name");
     validateNotNull(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.BUNDLE, 0, value);
   }
 
   public IntentBuilder extra(String name, CharSequence value) {
     validateNotBlank(name, "Name");
     validateNotBlank(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.CHAR_SEQUENCE, 0, value);
   }
 
   public IntentBuilder extra(String name, Parcelable value) {
     validateNotBlank(name, "Name");
     validateNotNull(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    if (rejected()) {
+      return this;
+    }
+    SpillHandle handle = mSpill != null ? mSpill.spill(value) : null;
+    if (handle != null) {
+      return put(name, ExtraType.PARCELABLE, 0, handle);
+    }
+    return put(name, ExtraType.PARCELABLE, 0, value);
   }
 
   public IntentBuilder extra(String name, Serializable value) {
     validateNotBlank(name, "Name");
     validateNotNull(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    if (rejected()) {
+      return this;
+    }
+    SpillHandle handle = mSpill != null ? mSpill.spill(value) : null;
+    if (handle != null) {
+      return put(name, ExtraType.PARCELABLE, 0, handle);
+    }
+    return put(name, ExtraType.SERIALIZABLE, 0, value);
   }
 
   // //////////////////////
@@ -346,68 +733,606 @@ public class IntentBuilder {
   public IntentBuilder extra(String name, CharSequence[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.CHAR_SEQUENCE_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, Parcelable[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.PARCELABLE_ARRAY, 0, value);
   }
 
   public IntentBuilder extra(String name, String[] value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.STRING_ARRAY, 0, value);
   }
 
   public IntentBuilder extraCharSequenceList(String name, ArrayList<CharSequence> value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.CHAR_SEQUENCE_LIST, 0, value);
   }
 
   public IntentBuilder extraIntegerList(String name, ArrayList<Integer> value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.INTEGER_LIST, 0, value);
   }
 
   public IntentBuilder extraParcelableList(String name, ArrayList<? extends Parcelable> value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
-    return this;
+    return put(name, ExtraType.PARCELABLE_LIST, 0, value);
   }
 
   public IntentBuilder extraStringList(String name, ArrayList<String> value) {
     validateNotBlank(name, "Name");
     validateNotEmpty(value, "Value");
-    mIntent.putExtra(name, value);
+    return put(name, ExtraType.STRING_LIST, 0, value);
+  }
+
+  public IntentBuilder extraCharSequenceList(String name, Iterable<? extends CharSequence> values) {
+    return extraCharSequenceList(name, values, DEFAULT_SIZE_HINT);
+  }
+
+  /**
+   * Copies {@code values} into a list allocated once at its final size: the size of a
+   * {@link Collection}, or {@code sizeHint} for any other {@link Iterable}.
+   */
+  public IntentBuilder extraCharSequenceList(String name, Iterable<? extends CharSequence> values,
+      int sizeHint) {
+    validateNotBlank(name, "Name");
+    validateNotNull(values, "Value");
+    validatePositive(sizeHint, "Size hint");
+    if (rejected()) {
+      return this;
+    }
+    ArrayList<CharSequence> list = toList(values, sizeHint);
+    validateNotEmpty(list, "Value");
+    return put(name, ExtraType.CHAR_SEQUENCE_LIST, 0, list);
+  }
+
+  public IntentBuilder extraParcelableList(String name, Iterable<? extends Parcelable> values) {
+    return extraParcelableList(name, values, DEFAULT_SIZE_HINT);
+  }
+
+  /**
+   * Copies {@code values} into a list allocated once at its final size: the size of a
+   * {@link Collection}, or {@code sizeHint} for any other {@link Iterable}.
+   */
+  public IntentBuilder extraParcelableList(String name, Iterable<? extends Parcelable> values,
+      int sizeHint) {
+    validateNotBlank(name, "Name");
+    validateNotNull(values, "Value");
+    validatePositive(sizeHint, "Size hint");
+    if (rejected()) {
+      return this;
+    }
+    ArrayList<Parcelable> list = toList(values, sizeHint);
+    validateNotEmpty(list, "Value");
+    return put(name, ExtraType.PARCELABLE_LIST, 0, list);
+  }
+
+  public IntentBuilder extraStringList(String name, Iterable<? extends String> values) {
+    return extraStringList(name, values, DEFAULT_SIZE_HINT);
+  }
+
+  /**
+   * Copies {@code values} into a list allocated once at its final size: the size of a
+   * {@link Collection}, or {@code sizeHint} for any other {@link Iterable}.
+   */
+  public IntentBuilder extraStringList(String name, Iterable<? extends String> values,
+      int sizeHint) {
+    validateNotBlank(name, "Name");
+    validateNotNull(values, "Value");
+    validatePositive(sizeHint, "Size hint");
+    if (rejected()) {
+      return this;
+    }
+    ArrayList<String> list = toList(values, sizeHint);
+    validateNotEmpty(list, "Value");
+    return put(name, ExtraType.STRING_LIST, 0, list);
+  }
+
+  // //////////////////////
+  // Async extras
+  // //////////////////////
+
+  /**
+   * Adds an extra whose value is produced by {@code producer}. {@link #buildAsync(Executor)} runs
+   * the producers in parallel, {@link #build()} runs them in turn on the calling thread. The
+   * value is written like the matching {@code extra(...)} overload, with the same validation.
+   */
+  public IntentBuilder extraAsync(String name, Callable<?> producer) {
+    validateNotBlank(name, "Name");
+    validateNotNull(producer, "Producer");
+    if (rejected()) {
+      return this;
+    }
+    if (mAsyncNames == null) {
+      mAsyncNames = new ArrayList<>(4);
+      mAsyncProducers = new ArrayList<>(4);
+    }
+    mAsyncNames.add(name);
+    mAsyncProducers.add(producer);
     return this;
   }
 
+  /**
+   * Adds a CharSequence list extra whose elements are only fetched from {@code values} when the
+   * intent is built, as with {@link #extraAsync(String, Callable)}.
+   */
+  public IntentBuilder extraCharSequenceListAsync(String name,
+      Callable<? extends Iterable<? extends CharSequence>> values) {
+    validateNotNull(values, "Producer");
+    if (rejected()) {
+      return this;
+    }
+    return extraAsync(name, new ListProducer<CharSequence>(values));
+  }
+
+  /**
+   * Adds a Parcelable list extra whose elements are only fetched from {@code values} when the
+   * intent is built, as with {@link #extraAsync(String, Callable)}.
+   */
+  public IntentBuilder extraParcelableListAsync(String name,
+      Callable<? extends Iterable<? extends Parcelable>> values) {
+    validateNotNull(values, "Producer");
+    if (rejected()) {
+      return this;
+    }
+    return extraAsync(name, new ListProducer<Parcelable>(values));
+  }
+
+  /**
+   * Adds a String list extra whose elements are only fetched from {@code values} when the
+   * intent is built, as with {@link #extraAsync(String, Callable)}.
+   */
+  public IntentBuilder extraStringListAsync(String name,
+      Callable<? extends Iterable<? extends String>> values) {
+    validateNotNull(values, "Producer");
+    if (rejected()) {
+      return this;
+    }
+    return extraAsync(name, new ListProducer<String>(values));
+  }
+
+  /**
+   * Runs the {@link #extraAsync(String, Callable)} producers on {@code executor} and builds the
+   * intent once all of them are done. The builder must not be touched until the future is done.
+   */
+  public IntentFuture buildAsync(Executor executor) {
+    if (validating()) {
+      PreConditions.validateNotNull(executor, "Executor");
+    }
+    List<String> names = mAsyncNames != null ? mAsyncNames : Collections.<String>emptyList();
+    List<Callable<?>> producers =
+        mAsyncProducers != null ? mAsyncProducers : Collections.<Callable<?>>emptyList();
+    mAsyncNames = null;
+    mAsyncProducers = null;
+    return IntentFuture.start(this, names, producers, executor);
+  }
+
   // //////////////////////
   // Return the intent
   // //////////////////////
 
+  public IntentTemplate freeze() {
+    flush();
+    return new IntentTemplate(intent());
+  }
+
+  /**
+   * Builds the intent and returns a shared instance structurally equal to it (see
+   * {@link Intents#equals(Intent, Intent)}) from a bounded LRU pool, so repeated identical
+   * intents resolve to one object. The result is shared: do not modify it. The pool keeps its
+   * own copy, so later calls on this builder do not affect it.
+   */
+  public Intent buildShared() {
+    return InternPool.internCopy(build());
+  }
+
+  /**
+   * Builds the intent and returns it if an activity can handle it, null otherwise. Resolution
+   * results are cached in {@link ResolutionCache#getDefault()}.
+   * <p>
+   * The default cache must be {@link ResolutionCache#register(Context) registered} to forget
+   * results when apps are installed or removed. This method registers it with the application
+   * context when a {@link #context(Context) context} is set; otherwise register it once yourself,
+   * or a "no handler" answer is kept until the process dies.
+   */
+  public Intent buildResolved(PackageManager pm) {
+    ResolutionCache cache = ResolutionCache.getDefault();
+    if (mContext != null) {
+      Context application = mContext.getApplicationContext();
+      cache.register(application != null ? application : mContext);
+    }
+    return buildResolved(pm, cache);
+  }
+
+  public Intent buildResolved(PackageManager pm, ResolutionCache cache) {
+    if (validating()) {
+      PreConditions.validateNotNull(pm, "PackageManager");
+      PreConditions.validateNotNull(cache, "ResolutionCache");
+    }
+    Intent intent = build();
+    return cache.resolveActivity(pm, intent, PackageManager.MATCH_DEFAULT_ONLY) != null
+        ? intent : null;
+  }
+
+  /**
+   * Builds the intent, or returns null if a call failed validation since
+   * {@link #validateInto(ValidationResult)}. Without a result to collect into, failures have
+   * already been thrown and this is the same as {@link #build()}.
+   */
+  public Intent tryBuild() {
+    Intent intent = build();
+    return mResult == null || mResult.isValid() ? intent : null;
+  }
+
   public Intent build() {
-    return mIntent;
+    if (mAsyncNames != null) {
+      runAsyncExtras();
+    }
+    flush();
+    mShared = true;
+    return intent();
+  }
+
+  // //////////////////////
+  // Validation
+  // //////////////////////
+
+  private boolean validating() {
+    return PreConditions.enabled() && mPolicy.isEnabled();
+  }
+
+  private void validateContext(Context context) {
+    if (validating()) {
+      report(PreConditions.checkContext(context), null);
+    }
+  }
+
+  private void validateNotNull(Object param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotNull(param), message);
+    }
+  }
+
+  private void validateNotBlank(CharSequence param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotBlank(param), message);
+    }
+  }
+
+  private void validatePositive(int value, String message) {
+    if (validating()) {
+      report(PreConditions.checkPositive(value), message);
+    }
+  }
+
+  private void validateSupported(ExtraType type, Object value) {
+    if (validating()) {
+      report(PreConditions.checkSupported(type),
+          value == null ? null : value.getClass().getName());
+    }
+  }
+
+  private void validateNotEmpty(List param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(CharSequence[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(boolean[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(byte[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(char[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(double[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(float[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(int[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
   }
 
+  private void validateNotEmpty(long[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(short[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(IntList param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(LongList param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+
+  private void validateNotEmpty(Parcelable[] param, String message) {
+    if (validating()) {
+      report(PreConditions.checkNotEmpty(param), message);
+    }
+  }
+  private void report(Violation violation, String message) {
+    if (violation == null) {
+      return;
+    }
+    if (mResult == null) {
+      throw violation.exception(message);
+    }
+    mResult.add(violation, message);
+    mRejected = true;
+  }
+
+  /**
+   * Whether the checks of the current call failed in collecting mode, in which case the call
+   * must return without touching the intent.
+   */
+  private boolean rejected() {
+    if (mRejected) {
+      mRejected = false;
+      return true;
+    }
+    return false;
+  }
+
+
   // //////////////////////
   // Private methods
   // //////////////////////
 
+  /**
+   * Uses the package of the Context given to {@link #context(Context)}, or else the one given to
+   * {@link ComponentCache#init(Context)}.
+   */
   private IntentBuilder setClass(Class<?> cls) {
-    validateContext(mContext);
+    String packageName =
+        mContext != null ? mContext.getPackageName() : ComponentCache.packageName();
+    if (packageName == null) {
+      validateContext(mContext);
+    }
     validateNotNull(cls, "Class<?>");
-    mIntent.setClass(mContext, cls);
+    if (rejected()) {
+      return this;
+    }
+    mutate().setComponent(ComponentCache.lookup(packageName, cls));
+    return this;
+  }
+
+  private void flush() {
+    if (mLog != null) {
+      mLog.applyTo(intent());
+      mLog.clear();
+    }
+  }
+
+  private Intent intent() {
+    if (mIntent == null) {
+      mIntent = new Intent(mBase);
+      mBase = null;
+    }
+    return mIntent;
+  }
+
+  private Intent mutate() {
+    mForkBase = null;
+    return intent();
+  }
+
+  private SizeEstimator sizes() {
+    if (mSizes == null) {
+      mSizes = new SizeEstimator();
+      mSizes.addAll((mIntent != null ? mIntent : mBase).getExtras());
+      if (mLog != null) {
+        mLog.estimateInto(mSizes);
+      }
+    }
+    return mSizes;
+  }
+
+  private void runAsyncExtras() {
+    String[] names = mAsyncNames.toArray(new String[mAsyncNames.size()]);
+    Object[] values = new Object[names.length];
+    for (int i = 0; i < names.length; i++) {
+      try {
+        values[i] = mAsyncProducers.get(i).call();
+      } catch (Exception e) {
+        throw new IllegalStateException("Producer of extra " + names[i] + " failed", e);
+      }
+    }
+    mAsyncNames = null;
+    mAsyncProducers = null;
+    extraValues(names, values);
+  }
+
+  /**
+   * Writes values whose type is only known at runtime through the matching typed overload.
+   */
+  void extraValues(String[] names, Object[] values) {
+    for (int i = 0; i < names.length; i++) {
+      extraValue(names[i], values[i]);
+    }
+  }
+
+  private IntentBuilder extraValue(String name, Object value) {
+    validateNotNull(value, "Value");
+    if (rejected()) {
+      return this;
+    }
+    ExtraType type = value == null ? null : ExtraType.of(value);
+    validateSupported(type, value);
+    if (rejected() || type == null) {
+      return this;
+    }
+    return extraOfType(name, type, value);
+  }
+
+  /**
+   * Passes {@code value}, boxed if primitive, to the {@code extra(...)} overload for
+   * {@code type}, which validates it as usual.
+   */
+  @SuppressWarnings("unchecked")
+  IntentBuilder extraOfType(String name, ExtraType type, Object value) {
+    switch (type) {
+      case BOOLEAN:
+        return extra(name, ((Boolean) value).booleanValue());
+      case BYTE:
+        return extra(name, ((Byte) value).byteValue());
+      case CHAR:
+        return extra(name, ((Character) value).charValue());
+      case DOUBLE:
+        return extra(name, ((Double) value).doubleValue());
+      case FLOAT:
+        return extra(name, ((Float) value).floatValue());
+      case INT:
+        return extra(name, ((Integer) value).intValue());
+      case LONG:
+        return extra(name, ((Long) value).longValue());
+      case SHORT:
+        return extra(name, ((Short) value).shortValue());
+      case STRING:
+        return extra(name, (String) value);
+      case BOOLEAN_ARRAY:
+        return extra(name, (boolean[]) value);
+      case BYTE_ARRAY:
+        return extra(name, (byte[]) value);
+      case CHAR_ARRAY:
+        return extra(name, (char[]) value);
+      case DOUBLE_ARRAY:
+        return extra(name, (double[]) value);
+      case FLOAT_ARRAY:
+        return extra(name, (float[]) value);
+      case INT_ARRAY:
+        return extra(name, (int[]) value);
+      case LONG_ARRAY:
+        return extra(name, (long[]) value);
+      case SHORT_ARRAY:
+        return extra(name, (short[]) value);
+      case BUNDLE:
+        return extra(name, (Bundle) value);
+      case CHAR_SEQUENCE:
+        return extra(name, (CharSequence) value);
+      case PARCELABLE:
+        return extra(name, (Parcelable) value);
+      case SERIALIZABLE:
+        return extra(name, (Serializable) value);
+      case CHAR_SEQUENCE_ARRAY:
+        return extra(name, (CharSequence[]) value);
+      case PARCELABLE_ARRAY:
+        return extra(name, (Parcelable[]) value);
+      case STRING_ARRAY:
+        return extra(name, (String[]) value);
+      case CHAR_SEQUENCE_LIST:
+        return extraCharSequenceList(name, (ArrayList<CharSequence>) value);
+      case INTEGER_LIST:
+        return extraIntegerList(name, (ArrayList<Integer>) value);
+      case PARCELABLE_LIST:
+        return extraParcelableList(name, (ArrayList<Parcelable>) value);
+      case STRING_LIST:
+        return extraStringList(name, (ArrayList<String>) value);
+      default:
+        throw new IllegalArgumentException("Unsupported extra type " + type);
+    }
+  }
+
+  private IntentBuilder put(String name, ExtraType type, long bits, Object value) {
+    if (rejected()) {
+      return this;
+    }
+    if (mSizes != null) {
+      mSizes.add(name, type, bits, value);
+    }
+    mForkBase = null;
+    if (mLog != null) {
+      mLog.addExtra(name, type, bits, value);
+    } else {
+      type.put(intent(), name, bits, value);
+    }
     return this;
   }
+
+  private static <T> ArrayList<T> toList(Iterable<? extends T> values, int sizeHint) {
+    int size = values instanceof Collection ? ((Collection<?>) values).size() : sizeHint;
+    ArrayList<T> list = new ArrayList<>(size);
+    for (T value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  private static void clear(Intent intent) {
+    intent.setAction(null);
+    intent.setDataAndType(null, null);
+    intent.setFlags(0);
+    Set<String> categories = intent.getCategories();
+    if (categories != null) {
+      for (String category : new ArrayList<>(categories)) {
+        intent.removeCategory(category);
+      }
+    }
+    intent.setComponent(null);
+    intent.setPackage(null);
+    intent.replaceExtras((Bundle) null);
+  }
+
+  /**
+   * Fetches the elements of a lazy list extra into a list at its final size.
+   */
+  private static final class ListProducer<T> implements Callable<ArrayList<T>> {
+
+    private final Callable<? extends Iterable<? extends T>> mSource;
+
+    ListProducer(Callable<? extends Iterable<? extends T>> source) {
+      mSource = source;
+    }
+
+    @Override
+    public ArrayList<T> call() throws Exception {
+      Iterable<? extends T> values = mSource.call();
+      return values != null ? toList(values, DEFAULT_SIZE_HINT) : null;
+    }
+  }
 }
@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of {@link IntentBuilder#buildAsync(Executor)}. Every extra producer runs as its own task
+ * on the executor; the thread finishing the last one adds all the values to the builder in
+ * registration order, through the usual validation, and builds the intent.
+ * <p>
+ * The first producer or validation failure fails the future. Cancelling it does not interrupt
+ * producers already running, their results are dropped.
+ */
+public final class IntentFuture implements Future<Intent> {
+
+  /**
+   * Notified once, on the thread that completes the future, or on the calling thread of
+   * {@link #then(Callback)} if it already completed.
+   */
+  public interface Callback {
+    void onIntent(Intent intent);
+
+    void onFailure(Throwable error);
+  }
+
+  private final IntentBuilder mBuilder;
+  private final String[] mNames;
+  private final Object[] mValues;
+  private int mRemaining;
+
+  private Intent mIntent;
+  private Throwable mError;
+  private boolean mCancelled;
+  private boolean mDone;
+  private List<Callback> mCallbacks;
+
+  private IntentFuture(IntentBuilder builder, String[] names) {
+    mBuilder = builder;
+    mNames = names;
+    mValues = new Object[names.length];
+    mRemaining = names.length;
+  }
+
+  static IntentFuture start(IntentBuilder builder, List<String> names,
+      List<Callable<?>> producers, Executor executor) {
+    final IntentFuture future =
+        new IntentFuture(builder, names.toArray(new String[names.size()]));
+    if (producers.isEmpty()) {
+      future.assemble();
+      return future;
+    }
+    for (int i = 0; i < producers.size(); i++) {
+      final int index = i;
+      final Callable<?> producer = producers.get(i);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (future.isDone()) {
+            return;
+          }
+          Object value;
+          try {
+            value = producer.call();
+          } catch (Throwable e) {
+            future.complete(null, e);
+            return;
+          }
+          if (future.produced(index, value)) {
+            future.assemble();
+          }
+        }
+      });
+    }
+    return future;
+  }
+
+  /**
+   * Returns true for the last value, whose caller then assembles the intent.
+   */
+  private synchronized boolean produced(int index, Object value) {
+    if (mDone) {
+      return false;
+    }
+    mValues[index] = value;
+    return --mRemaining == 0;
+  }
+
+  private void assemble() {
+    Intent intent;
+    try {
+      mBuilder.extraValues(mNames, mValues);
+      intent = mBuilder.build();
+    } catch (Throwable e) {
+      complete(null, e);
+      return;
+    }
+    complete(intent, null);
+  }
+
+  private void complete(Intent intent, Throwable error) {
+    List<Callback> callbacks;
+    synchronized (this) {
+      if (mDone) {
+        return;
+      }
+      mIntent = intent;
+      mError = error;
+      mDone = true;
+      callbacks = mCallbacks;
+      mCallbacks = null;
+      notifyAll();
+    }
+    if (callbacks != null) {
+      for (Callback callback : callbacks) {
+        dispatch(callback);
+      }
+    }
+  }
+
+  public IntentFuture then(Callback callback) {
+    PreConditions.validateNotNull(callback, "Callback");
+    synchronized (this) {
+      if (!mDone) {
+        if (mCallbacks == null) {
+          mCallbacks = new ArrayList<>(1);
+        }
+        mCallbacks.add(callback);
+        return this;
+      }
+    }
+    dispatch(callback);
+    return this;
+  }
+
+  private void dispatch(Callback callback) {
+    if (mCancelled) {
+      callback.onFailure(new CancellationException());
+    } else if (mError != null) {
+      callback.onFailure(mError);
+    } else {
+      callback.onIntent(mIntent);
+    }
+  }
+
+  // //////////////////////
+  // Future
+  // //////////////////////
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    synchronized (this) {
+      if (mDone) {
+        return false;
+      }
+      mCancelled = true;
+    }
+    complete(null, null);
+    return true;
+  }
+
+  @Override
+  public synchronized boolean isCancelled() {
+    return mCancelled;
+  }
+
+  @Override
+  public synchronized boolean isDone() {
+    return mDone;
+  }
+
+  @Override
+  public synchronized Intent get() throws InterruptedException, ExecutionException {
+    while (!mDone) {
+      wait();
+    }
+    return result();
+  }
+
+  @Override
+  public synchronized Intent get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!mDone) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        throw new TimeoutException();
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return result();
+  }
+
+  private Intent result() throws ExecutionException {
+    if (mCancelled) {
+      throw new CancellationException();
+    }
+    if (mError != null) {
+      throw new ExecutionException(mError);
+    }
+    return mIntent;
+  }
+}
@@ -0,0 +1,429 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.annotation.TargetApi;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Streams intent definitions from JSON straight into {@link IntentBuilder}s.
+ * <p>
+ * The input is an array of intent objects:
+ * <pre>
+ * [{
+ *   "action": "com.example.SYNC",
+ *   "data": "content://com.example/items", "type": "vnd.example/item",
+ *   "component": {"package": "com.example", "class": "com.example.SyncService"},
+ *   "package": "com.example",
+ *   "flags": [268435456],
+ *   "categories": ["android.intent.category.DEFAULT"],
+ *   "extras": {
+ *     "id": {"long": 42},
+ *     "ids": {"int_array": [1, 2, 3]},
+ *     "args": {"bundle": {"name": {"string": "value"}}}
+ *   }
+ * }]
+ * </pre>
+ * Every extra is a single-key object naming its type, so the type is known before the value is
+ * read and the value goes to the matching {@code extra(...)} overload without an intermediate
+ * tree. Type names are the lower case {@code ExtraType} names: the primitives, {@code string},
+ * {@code char_sequence}, the {@code *_array} variants, {@code string_list}, {@code integer_list},
+ * {@code char_sequence_list} and {@code bundle}. Parcelable and Serializable extras cannot be
+ * expressed in JSON. Chars are one-character strings, {@code char_array} a string. Unknown
+ * intent keys are skipped.
+ * <p>
+ * Each intent is handed to the {@link Callback} as soon as its object closes, so memory is
+ * bounded by the largest single intent, not the size of the input.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public final class IntentJsonLoader {
+
+  /**
+   * Receives each intent as soon as it has been read.
+   */
+  public interface Callback {
+    void onIntent(IntentBuilder builder) throws IOException;
+  }
+
+  private IntentJsonLoader() {
+  }
+
+  /**
+   * Reads every intent from {@code in}. Returns how many were read. Malformed input throws an
+   * IOException; values rejected by {@link IntentBuilder} throw IllegalArgumentException.
+   */
+  public static int load(Reader in, Callback callback) throws IOException {
+    PreConditions.validateNotNull(in, "Reader");
+    PreConditions.validateNotNull(callback, "Callback");
+    JsonReader reader = new JsonReader(in);
+    int count = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      callback.onIntent(readIntent(reader));
+      count++;
+    }
+    reader.endArray();
+    return count;
+  }
+
+  private static IntentBuilder readIntent(JsonReader reader) throws IOException {
+    IntentBuilder builder = new IntentBuilder();
+    String data = null;
+    String type = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String key = reader.nextName();
+      if ("action".equals(key)) {
+        builder.action(reader.nextString());
+      } else if ("data".equals(key)) {
+        data = reader.nextString();
+      } else if ("type".equals(key)) {
+        type = reader.nextString();
+      } else if ("component".equals(key)) {
+        readComponent(reader, builder);
+      } else if ("package".equals(key)) {
+        builder.setPackage(reader.nextString());
+      } else if ("flags".equals(key)) {
+        readFlags(reader, builder);
+      } else if ("categories".equals(key)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          builder.categories(reader.nextString());
+        }
+        reader.endArray();
+      } else if ("extras".equals(key)) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          readExtra(reader, reader.nextName(), builder, null);
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (data != null && type != null) {
+      builder.dataAndType(Uri.parse(data), type);
+    } else if (data != null) {
+      builder.data(Uri.parse(data));
+    } else if (type != null) {
+      builder.type(type);
+    }
+    return builder;
+  }
+
+  private static void readComponent(JsonReader reader, IntentBuilder builder) throws IOException {
+    String pack = null;
+    String cls = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String key = reader.nextName();
+      if ("package".equals(key)) {
+        pack = reader.nextString();
+      } else if ("class".equals(key)) {
+        cls = reader.nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    builder.className(pack, cls);
+  }
+
+  private static void readFlags(JsonReader reader, IntentBuilder builder) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      builder.flag(reader.nextInt());
+      return;
+    }
+    reader.beginArray();
+    while (reader.hasNext()) {
+      builder.flag(reader.nextInt());
+    }
+    reader.endArray();
+  }
+
+  // //////////////////////
+  // Extras
+  // //////////////////////
+
+  /**
+   * Reads one {@code {"type": value}} object into {@code builder}, or into {@code bundle} when
+   * reading a nested bundle.
+   */
+  private static void readExtra(JsonReader reader, String name, IntentBuilder builder,
+      Bundle bundle) throws IOException {
+    reader.beginObject();
+    if (reader.peek() != JsonToken.NAME) {
+      throw new IOException("Extra " + name + " must have exactly one type key");
+    }
+    ExtraType type = type(reader.nextName());
+    long bits = 0;
+    Object value = null;
+    switch (type) {
+      case BOOLEAN:
+        bits = reader.nextBoolean() ? 1 : 0;
+        break;
+      case BYTE:
+        bits = checkRange(reader.nextInt(), Byte.MIN_VALUE, Byte.MAX_VALUE, name);
+        break;
+      case SHORT:
+        bits = checkRange(reader.nextInt(), Short.MIN_VALUE, Short.MAX_VALUE, name);
+        break;
+      case INT:
+        bits = reader.nextInt();
+        break;
+      case LONG:
+        bits = reader.nextLong();
+        break;
+      case CHAR:
+        bits = readChar(reader);
+        break;
+      case DOUBLE:
+        bits = Double.doubleToRawLongBits(reader.nextDouble());
+        break;
+      case FLOAT:
+        bits = Float.floatToRawIntBits((float) reader.nextDouble());
+        break;
+      case STRING:
+      case CHAR_SEQUENCE:
+        value = reader.nextString();
+        break;
+      case BOOLEAN_ARRAY:
+        value = readBooleans(reader);
+        break;
+      case BYTE_ARRAY:
+      case SHORT_ARRAY:
+      case INT_ARRAY:
+        value = readInts(reader, type, name);
+        break;
+      case LONG_ARRAY:
+        value = readLongs(reader);
+        break;
+      case FLOAT_ARRAY:
+      case DOUBLE_ARRAY:
+        value = readDoubles(reader, type);
+        break;
+      case CHAR_ARRAY:
+        value = reader.nextString().toCharArray();
+        break;
+      case STRING_ARRAY:
+      case CHAR_SEQUENCE_ARRAY:
+      case STRING_LIST:
+      case CHAR_SEQUENCE_LIST:
+        value = readStrings(reader, type);
+        break;
+      case INTEGER_LIST:
+        value = readIntegers(reader);
+        break;
+      case BUNDLE:
+        Bundle nested = new Bundle();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          readExtra(reader, reader.nextName(), null, nested);
+        }
+        reader.endObject();
+        value = nested;
+        break;
+      default:
+        throw new IOException("Unsupported extra type " + type + " for " + name);
+    }
+    if (reader.hasNext()) {
+      throw new IOException("Extra " + name + " must have exactly one type key");
+    }
+    reader.endObject();
+    if (bundle != null) {
+      type.put(bundle, name, bits, value);
+    } else {
+      builder.extraOfType(name, type, IntentSpec.value(type, bits, value));
+    }
+  }
+
+  private static ExtraType type(String name) throws IOException {
+    try {
+      ExtraType type = ExtraType.valueOf(name.toUpperCase(Locale.US));
+      if (type != ExtraType.ALL) {
+        return type;
+      }
+    } catch (IllegalArgumentException e) {
+      // Reported below.
+    }
+    throw new IOException("Unknown extra type " + name);
+  }
+
+  private static int checkRange(int value, int min, int max, String name) throws IOException {
+    if (value < min || value > max) {
+      throw new IOException("Value " + value + " of extra " + name + " is out of range ["
+          + min + ", " + max + "]");
+    }
+    return value;
+  }
+
+  private static char readChar(JsonReader reader) throws IOException {
+    String value = reader.nextString();
+    if (value.length() != 1) {
+      throw new IOException("Expected a single character, got \"" + value + "\"");
+    }
+    return value.charAt(0);
+  }
+
+  // //////////////////////
+  // Arrays, read into growing primitive arrays without boxing
+  // //////////////////////
+
+  private static boolean[] readBooleans(JsonReader reader) throws IOException {
+    boolean[] values = new boolean[16];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == values.length) {
+        boolean[] grown = new boolean[size * 2];
+        System.arraycopy(values, 0, grown, 0, size);
+        values = grown;
+      }
+      values[size++] = reader.nextBoolean();
+    }
+    reader.endArray();
+    boolean[] result = new boolean[size];
+    System.arraycopy(values, 0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * Reads into an {@code int[]} and narrows once at the end for bytes and shorts.
+   */
+  private static Object readInts(JsonReader reader, ExtraType type, String name)
+      throws IOException {
+    int[] values = new int[16];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == values.length) {
+        int[] grown = new int[size * 2];
+        System.arraycopy(values, 0, grown, 0, size);
+        values = grown;
+      }
+      values[size++] = reader.nextInt();
+    }
+    reader.endArray();
+    if (type == ExtraType.BYTE_ARRAY) {
+      byte[] result = new byte[size];
+      for (int i = 0; i < size; i++) {
+        result[i] = (byte) checkRange(values[i], Byte.MIN_VALUE, Byte.MAX_VALUE, name);
+      }
+      return result;
+    }
+    if (type == ExtraType.SHORT_ARRAY) {
+      short[] result = new short[size];
+      for (int i = 0; i < size; i++) {
+        result[i] = (short) checkRange(values[i], Short.MIN_VALUE, Short.MAX_VALUE, name);
+      }
+      return result;
+    }
+    int[] result = new int[size];
+    System.arraycopy(values, 0, result, 0, size);
+    return result;
+  }
+
+  private static long[] readLongs(JsonReader reader) throws IOException {
+    long[] values = new long[16];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == values.length) {
+        long[] grown = new long[size * 2];
+        System.arraycopy(values, 0, grown, 0, size);
+        values = grown;
+      }
+      values[size++] = reader.nextLong();
+    }
+    reader.endArray();
+    long[] result = new long[size];
+    System.arraycopy(values, 0, result, 0, size);
+    return result;
+  }
+
+  private static Object readDoubles(JsonReader reader, ExtraType type) throws IOException {
+    double[] values = new double[16];
+    int size = 0;
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (size == values.length) {
+        double[] grown = new double[size * 2];
+        System.arraycopy(values, 0, grown, 0, size);
+        values = grown;
+      }
+      values[size++] = reader.nextDouble();
+    }
+    reader.endArray();
+    if (type == ExtraType.FLOAT_ARRAY) {
+      float[] result = new float[size];
+      for (int i = 0; i < size; i++) {
+        result[i] = (float) values[i];
+      }
+      return result;
+    }
+    double[] result = new double[size];
+    System.arraycopy(values, 0, result, 0, size);
+    return result;
+  }
+
+  private static Object readStrings(JsonReader reader, ExtraType type) throws IOException {
+    ArrayList<String> values = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      values.add(reader.nextString());
+    }
+    reader.endArray();
+    switch (type) {
+      case STRING_ARRAY:
+        return values.toArray(new String[values.size()]);
+      case CHAR_SEQUENCE_ARRAY:
+        return values.toArray(new CharSequence[values.size()]);
+      case CHAR_SEQUENCE_LIST:
+        return new ArrayList<CharSequence>(values);
+      default:
+        return values;
+    }
+  }
+
+  private static ArrayList<Integer> readIntegers(JsonReader reader) throws IOException {
+    ArrayList<Integer> values = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      values.add(reader.nextInt());
+    }
+    reader.endArray();
+    return values;
+  }
+}
@@ -0,0 +1,498 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Durable FIFO of {@link IntentSpec}s, for intents that have to be delivered later.
+ * <p>
+ * Specs are encoded with {@link IntentSpecCodec} and appended to a log split into fixed size,
+ * memory-mapped segment files. Each record is a length, a CRC32 of the payload and the payload.
+ * {@link #append(IntentSpec)} only writes to the mapping; {@link #sync()} forces everything
+ * appended so far to disk in one call, so a batch of appends pays for a single flush. Appends not
+ * yet synced can be lost on a crash.
+ * <p>
+ * On open the log is scanned and cut at the first record that is incomplete or fails its
+ * checksum. {@link #drain(int, Handler)} hands records to a {@link Handler} in batches and only
+ * moves the persisted read position once the handler returns, so a batch interrupted by a crash
+ * or an exception is delivered again. The handler runs without holding the queue's lock, so
+ * producers keep appending while a batch is handled. A record that cannot be decoded, or a batch
+ * the handler keeps rejecting, can be dropped with {@link #skip(int)}. Segments are deleted once
+ * fully drained.
+ */
+public class IntentQueue implements Closeable {
+
+  public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+  static final String HEAD = "head";
+  private static final String PREFIX = "segment-";
+  private static final String SUFFIX = ".log";
+  private static final int RECORD_HEADER = 8;
+  private static final int HEAD_SIZE = 16;
+
+  /**
+   * Receives drained records.
+   */
+  public interface Handler {
+    /**
+     * Throwing leaves the batch in the queue.
+     */
+    void handle(List<IntentSpec> batch) throws Exception;
+  }
+
+  private final File mDirectory;
+  private final int mSegmentSize;
+  private final Set<String> mSerializable;
+  private final Object mSyncLock = new Object();
+  // Held by drain() and skip() around the unlocked handler call, so only one of them moves the
+  // head at a time. Taken before the queue's own lock.
+  private final Object mDrainLock = new Object();
+  private final ArrayList<Segment> mSegments = new ArrayList<>();
+  private final CRC32 mCrc = new CRC32();
+
+  private final RandomAccessFile mHeadFile;
+  private final ByteBuffer mHeadBuffer = ByteBuffer.allocate(HEAD_SIZE);
+  private long mHeadSegment;
+  private int mHeadOffset;
+  // Position after the records walked by the last scan(), as an index into mSegments and an
+  // offset in that segment.
+  private int mScanIndex;
+  private int mScanOffset;
+
+  private long mAppended;
+  private long mSynced;
+  private boolean mClosed;
+
+  public IntentQueue(File directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  public IntentQueue(File directory, int segmentSize) throws IOException {
+    this(directory, segmentSize, new Class<?>[0]);
+  }
+
+  /**
+   * @param serializable the classes Serializable extras may be resolved against when records are
+   *     drained, see {@link IntentSpecCodec}
+   */
+  public IntentQueue(File directory, int segmentSize, Class<?>... serializable)
+      throws IOException {
+    PreConditions.validateNotNull(directory, "Directory");
+    if (segmentSize <= RECORD_HEADER) {
+      throw new IllegalArgumentException("Segment size must be greater than " + RECORD_HEADER);
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    mDirectory = directory;
+    mSegmentSize = segmentSize;
+    mSerializable = IntentSpecCodec.serializableNames(serializable);
+    mHeadFile = new RandomAccessFile(new File(directory, HEAD), "rw");
+    readHead();
+    recover();
+  }
+
+  // //////////////////////
+  // Writing
+  // //////////////////////
+
+  /**
+   * Appends {@code spec} to the log. It is durable once {@link #sync()} returns.
+   */
+  public synchronized void append(IntentSpec spec) throws IOException {
+    PreConditions.validateNotNull(spec, "IntentSpec");
+    validateOpen();
+    byte[] payload = IntentSpecCodec.encode(spec);
+    int size = RECORD_HEADER + payload.length;
+    if (size > mSegmentSize) {
+      throw new IllegalArgumentException("Encoded spec of " + payload.length
+          + " bytes does not fit in a segment of " + mSegmentSize);
+    }
+    Segment tail = tail();
+    if (tail.mBuffer.remaining() < size) {
+      tail.mBuffer.force();
+      tail = openSegment(tail.mId + 1);
+    }
+    mCrc.reset();
+    mCrc.update(payload, 0, payload.length);
+    MappedByteBuffer buffer = tail.mBuffer;
+    buffer.putInt(payload.length);
+    buffer.putInt((int) mCrc.getValue());
+    buffer.put(payload);
+    mAppended++;
+  }
+
+  /**
+   * Forces all appended records to disk. Concurrent callers share one flush: a caller that waited
+   * for another thread's flush returns without flushing again if that flush covered its appends.
+   */
+  public void sync() throws IOException {
+    long target;
+    synchronized (this) {
+      target = mAppended;
+    }
+    synchronized (mSyncLock) {
+      if (mSynced >= target) {
+        return;
+      }
+      MappedByteBuffer buffer;
+      synchronized (this) {
+        validateOpen();
+        target = mAppended;
+        // Segments are forced when they fill up, so only the tail can hold unsynced records.
+        buffer = tail().mBuffer;
+      }
+      buffer.force();
+      mSynced = target;
+    }
+  }
+
+  // //////////////////////
+  // Reading
+  // //////////////////////
+
+  public synchronized boolean isEmpty() {
+    validateOpen();
+    Segment head = mSegments.get(0);
+    return mSegments.size() == 1 && readLength(head, mHeadOffset) == 0;
+  }
+
+  /**
+   * Passes up to {@code maxBatch} records at a time to {@code handler}, oldest first, until the
+   * queue is empty. Returns the number of records drained. If the handler throws, the failed batch
+   * stays at the head of the queue and the exception is rethrown, wrapped in an IOException unless
+   * it already is one. A batch ends before a record that cannot be decoded; once that record
+   * reaches the head, an IOException is thrown until it is dropped with {@link #skip(int)}.
+   */
+  public int drain(int maxBatch, Handler handler) throws IOException {
+    PreConditions.validatePositive(maxBatch, "Batch size");
+    PreConditions.validateNotNull(handler, "Handler");
+    synchronized (mDrainLock) {
+      int drained = 0;
+      List<IntentSpec> batch = new ArrayList<>(Math.min(maxBatch, 64));
+      while (true) {
+        batch.clear();
+        int index;
+        int offset;
+        synchronized (this) {
+          validateOpen();
+          if (scan(maxBatch, batch) < 0) {
+            throw new IOException("Record at the head of the queue cannot be decoded, "
+                + "skip(1) drops it");
+          }
+          index = mScanIndex;
+          offset = mScanOffset;
+        }
+        if (batch.isEmpty()) {
+          return drained;
+        }
+        try {
+          handler.handle(batch);
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException("Handler failed, batch kept in the queue", e);
+        }
+        synchronized (this) {
+          validateOpen();
+          advance(index, offset);
+        }
+        drained += batch.size();
+      }
+    }
+  }
+
+  /**
+   * Drops up to {@code count} records from the head of the queue without decoding them, e.g. one
+   * that fails to decode or a batch the handler can never accept. Returns the number dropped.
+   */
+  public int skip(int count) throws IOException {
+    PreConditions.validatePositive(count, "Count");
+    synchronized (mDrainLock) {
+      synchronized (this) {
+        validateOpen();
+        int skipped = scan(count, null);
+        advance(mScanIndex, mScanOffset);
+        return skipped;
+      }
+    }
+  }
+
+  /**
+   * Walks up to {@code max} records from the head and leaves the position after them in
+   * {@link #mScanIndex} and {@link #mScanOffset}. Records are decoded into {@code batch} unless it
+   * is null, and the walk stops before a record that fails to decode. Returns the number of
+   * records walked, or -1 if the head record itself fails to decode.
+   */
+  private int scan(int max, List<IntentSpec> batch) {
+    int count = 0;
+    int index = 0;
+    int offset = mHeadOffset;
+    while (count < max) {
+      Segment segment = mSegments.get(index);
+      int length = readLength(segment, offset);
+      if (length == 0) {
+        if (index == mSegments.size() - 1) {
+          break;
+        }
+        index++;
+        offset = 0;
+        continue;
+      }
+      if (batch != null) {
+        ByteBuffer record = segment.mBuffer.duplicate();
+        record.position(offset + RECORD_HEADER);
+        try {
+          batch.add(IntentSpecCodec.decode(record, length, mSerializable));
+        } catch (IllegalArgumentException e) {
+          if (batch.isEmpty()) {
+            return -1;
+          }
+          break;
+        }
+      }
+      count++;
+      offset += RECORD_HEADER + length;
+    }
+    mScanIndex = index;
+    mScanOffset = offset;
+    return count;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (mClosed) {
+      return;
+    }
+    tail().mBuffer.force();
+    for (Segment segment : mSegments) {
+      segment.mFile.close();
+    }
+    mSegments.clear();
+    mHeadFile.close();
+    mClosed = true;
+  }
+
+  // //////////////////////
+  // Segments
+  // //////////////////////
+
+  private void recover() throws IOException {
+    long[] ids = segmentIds();
+    for (long id : ids) {
+      if (id < mHeadSegment) {
+        new File(mDirectory, name(id)).delete();
+      }
+    }
+    ids = segmentIds();
+    if (ids.length == 0 || ids[0] != mHeadSegment) {
+      // Missing or out of date head: replay from the oldest segment left.
+      mHeadSegment = ids.length == 0 ? 0 : ids[0];
+      mHeadOffset = 0;
+    }
+    boolean truncated = false;
+    for (long id : ids) {
+      if (truncated) {
+        new File(mDirectory, name(id)).delete();
+        continue;
+      }
+      Segment segment = openSegment(id);
+      int offset = id == mHeadSegment ? mHeadOffset : 0;
+      int length;
+      while ((length = validLength(segment, offset)) > 0) {
+        offset += RECORD_HEADER + length;
+      }
+      if (length < 0) {
+        // Corrupt or torn record: drop it, anything after it and any later segment.
+        truncated = true;
+        ByteBuffer buffer = segment.mBuffer.duplicate();
+        buffer.position(offset);
+        while (buffer.hasRemaining()) {
+          buffer.put((byte) 0);
+        }
+        segment.mBuffer.force();
+      }
+      segment.mBuffer.position(offset);
+    }
+    if (mSegments.isEmpty()) {
+      openSegment(mHeadSegment);
+    }
+  }
+
+  private Segment openSegment(long id) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(new File(mDirectory, name(id)), "rw");
+    if (file.length() != mSegmentSize) {
+      file.setLength(mSegmentSize);
+    }
+    MappedByteBuffer buffer =
+        file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mSegmentSize);
+    Segment segment = new Segment(id, file, buffer);
+    mSegments.add(segment);
+    return segment;
+  }
+
+  private void advance(int index, int offset) throws IOException {
+    for (int i = 0; i < index; i++) {
+      Segment drained = mSegments.remove(0);
+      drained.mFile.close();
+      new File(mDirectory, name(drained.mId)).delete();
+    }
+    mHeadSegment = mSegments.get(0).mId;
+    mHeadOffset = offset;
+    writeHead();
+  }
+
+  private Segment tail() {
+    return mSegments.get(mSegments.size() - 1);
+  }
+
+  private long[] segmentIds() {
+    String[] names = mDirectory.list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }
+    });
+    long[] ids = new long[names == null ? 0 : names.length];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = Long.parseLong(
+          names[i].substring(PREFIX.length(), names[i].length() - SUFFIX.length()), 16);
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  private static String name(long id) {
+    String hex = Long.toHexString(id);
+    return PREFIX + "0000000000000000".substring(hex.length()) + hex + SUFFIX;
+  }
+
+  private int readLength(Segment segment, int offset) {
+    return offset + RECORD_HEADER > mSegmentSize ? 0 : segment.mBuffer.getInt(offset);
+  }
+
+  /**
+   * Returns the payload length of the record at {@code offset}, 0 at the end of the log, or -1 if
+   * the record is torn or corrupt.
+   */
+  private int validLength(Segment segment, int offset) {
+    if (offset + RECORD_HEADER > mSegmentSize) {
+      return 0;
+    }
+    ByteBuffer buffer = segment.mBuffer;
+    int length = buffer.getInt(offset);
+    int crc = buffer.getInt(offset + 4);
+    if (length == 0 && crc == 0) {
+      return 0;
+    }
+    if (length <= 0 || length > mSegmentSize - offset - RECORD_HEADER) {
+      return -1;
+    }
+    byte[] payload = new byte[length];
+    ByteBuffer record = buffer.duplicate();
+    record.position(offset + RECORD_HEADER);
+    record.get(payload);
+    mCrc.reset();
+    mCrc.update(payload, 0, length);
+    return (int) mCrc.getValue() == crc ? length : -1;
+  }
+
+  // //////////////////////
+  // Head
+  // //////////////////////
+
+  /**
+   * The head file holds the segment id and offset of the first record not yet drained, followed
+   * by a checksum of both. A torn write fails the checksum and the log is replayed from its
+   * oldest segment.
+   */
+  private void readHead() throws IOException {
+    if (mHeadFile.length() < HEAD_SIZE) {
+      return;
+    }
+    mHeadBuffer.clear();
+    mHeadFile.getChannel().read(mHeadBuffer, 0);
+    long segment = mHeadBuffer.getLong(0);
+    int offset = mHeadBuffer.getInt(8);
+    if (headCrc(segment, offset) == mHeadBuffer.getInt(12)) {
+      mHeadSegment = segment;
+      mHeadOffset = offset;
+    }
+  }
+
+  private void writeHead() throws IOException {
+    mHeadBuffer.clear();
+    mHeadBuffer.putLong(mHeadSegment).putInt(mHeadOffset)
+        .putInt(headCrc(mHeadSegment, mHeadOffset));
+    mHeadBuffer.flip();
+    FileChannel channel = mHeadFile.getChannel();
+    while (mHeadBuffer.hasRemaining()) {
+      channel.write(mHeadBuffer, mHeadBuffer.position());
+    }
+    channel.force(false);
+  }
+
+  private int headCrc(long segment, int offset) {
+    mCrc.reset();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      mCrc.update((int) (segment >>> shift));
+    }
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      mCrc.update(offset >>> shift);
+    }
+    return (int) mCrc.getValue();
+  }
+
+  private void validateOpen() {
+    if (mClosed) {
+      throw new IllegalStateException("IntentQueue is closed");
+    }
+  }
+
+  private static final class Segment {
+    final long mId;
+    final RandomAccessFile mFile;
+    final MappedByteBuffer mBuffer;
+
+    Segment(long id, RandomAccessFile file, MappedByteBuffer buffer) {
+      mId = id;
+      mFile = file;
+      mBuffer = buffer;
+    }
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Typed, memoized access to the extras written by {@link IntentBuilder}. The extras bundle is
+ * fetched once and every key is looked up at most once. Unlike the {@link Bundle} getters, a
+ * missing key or a value of the wrong type is reported to a {@link Listener} and never builds a
+ * {@link ClassCastException}.
+ */
+public class IntentReader {
+
+  /**
+   * Receives read problems. Both methods are called at most once per key.
+   */
+  public interface Listener {
+
+    void onMissing(String name);
+
+    void onWrongType(String name, Class<?> expected, Object value);
+  }
+
+  private static final Listener SILENT = new Listener() {
+    @Override
+    public void onMissing(String name) {
+    }
+
+    @Override
+    public void onWrongType(String name, Class<?> expected, Object value) {
+    }
+  };
+
+  private static final Object MISSING = new Object();
+
+  private final Bundle mExtras;
+  private final HashMap<String, Object> mValues = new HashMap<>();
+  private final ArrayList<SpillHandle> mSpilled = new ArrayList<>();
+  private Listener mListener = SILENT;
+  private Spill mSpill;
+
+  public IntentReader(Intent intent) {
+    PreConditions.validateNotNull(intent, "Intent");
+    mExtras = intent.getExtras();
+  }
+
+  public IntentReader(Bundle extras) {
+    PreConditions.validateNotNull(extras, "Extras bundle");
+    mExtras = extras;
+  }
+
+  public IntentReader listener(Listener listener) {
+    PreConditions.validateNotNull(listener, "Listener");
+    mListener = listener;
+    return this;
+  }
+
+  /**
+   * Sets the {@link Spill} whose directory spilled extras are read from. Without one, spilled
+   * extras are reported as missing.
+   */
+  public IntentReader spill(Spill spill) {
+    PreConditions.validateNotNull(spill, "Spill");
+    mSpill = spill;
+    return this;
+  }
+
+  public boolean has(String name) {
+    return value(name) != MISSING;
+  }
+
+  // //////////////////////
+  // Primitive extras
+  // //////////////////////
+
+  public boolean getBoolean(String name, boolean defaultValue) {
+    Boolean value = typed(name, Boolean.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public byte getByte(String name, byte defaultValue) {
+    Byte value = typed(name, Byte.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public char getChar(String name, char defaultValue) {
+    Character value = typed(name, Character.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public double getDouble(String name, double defaultValue) {
+    Double value = typed(name, Double.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public float getFloat(String name, float defaultValue) {
+    Float value = typed(name, Float.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public int getInt(String name, int defaultValue) {
+    Integer value = typed(name, Integer.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public long getLong(String name, long defaultValue) {
+    Long value = typed(name, Long.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public short getShort(String name, short defaultValue) {
+    Short value = typed(name, Short.class);
+    return value != null ? value : defaultValue;
+  }
+
+  public String getString(String name) {
+    return typed(name, String.class);
+  }
+
+  // //////////////////////
+  // Primitive Arrays extras
+  // //////////////////////
+
+  public boolean[] getBooleanArray(String name) {
+    return typed(name, boolean[].class);
+  }
+
+  public byte[] getByteArray(String name) {
+    return typed(name, byte[].class);
+  }
+
+  public char[] getCharArray(String name) {
+    return typed(name, char[].class);
+  }
+
+  public double[] getDoubleArray(String name) {
+    return typed(name, double[].class);
+  }
+
+  public float[] getFloatArray(String name) {
+    return typed(name, float[].class);
+  }
+
+  public int[] getIntArray(String name) {
+    return typed(name, int[].class);
+  }
+
+  public long[] getLongArray(String name) {
+    return typed(name, long[].class);
+  }
+
+  public short[] getShortArray(String name) {
+    return typed(name, short[].class);
+  }
+
+  /**
+   * Returns the {@code int[]} extra as a list backed by the array, without copying or boxing.
+   */
+  public IntList getIntList(String name) {
+    int[] values = getIntArray(name);
+    return values != null ? IntList.wrap(values) : null;
+  }
+
+  /**
+   * Returns the {@code long[]} extra as a list backed by the array, without copying or boxing.
+   */
+  public LongList getLongList(String name) {
+    long[] values = getLongArray(name);
+    return values != null ? LongList.wrap(values) : null;
+  }
+
+  // //////////////////////
+  // Object extras
+  // //////////////////////
+
+  public Bundle getBundle(String name) {
+    return typed(name, Bundle.class);
+  }
+
+  public CharSequence getCharSequence(String name) {
+    return typed(name, CharSequence.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T extends Parcelable> T getParcelable(String name) {
+    unspill(name, SpillHandle.KIND_PARCELABLE);
+    return (T) typed(name, Parcelable.class);
+  }
+
+  public Serializable getSerializable(String name) {
+    unspill(name, SpillHandle.KIND_SERIALIZABLE);
+    return typed(name, Serializable.class);
+  }
+
+  // //////////////////////
+  // Spilled extras
+  // //////////////////////
+
+  /**
+   * Returns a {@code byte[]} extra as a buffer. Spilled payloads are mapped read-only, without
+   * copying.
+   */
+  public ByteBuffer getBytes(String name) {
+    Object value = value(name);
+    if (value instanceof byte[]) {
+      return ByteBuffer.wrap((byte[]) value);
+    }
+    SpillHandle handle = typed(name, SpillHandle.class);
+    if (handle == null) {
+      return null;
+    }
+    if (mSpill != null) {
+      try {
+        return mSpill.map(handle);
+      } catch (IOException e) {
+        // Reported as missing below.
+      }
+    }
+    mListener.onMissing(name);
+    mValues.put(name, MISSING);
+    return null;
+  }
+
+  /**
+   * Deletes the files of every spilled extra read so far. The handles are still in the intent,
+   * so only call this once the intent will not be read again.
+   */
+  public void releaseSpilled() {
+    if (mSpill == null) {
+      return;
+    }
+    for (Object value : mValues.values()) {
+      if (value instanceof SpillHandle) {
+        mSpill.release((SpillHandle) value);
+      }
+    }
+    for (SpillHandle handle : mSpilled) {
+      mSpill.release(handle);
+    }
+    mSpilled.clear();
+  }
+
+  // //////////////////////
+  // Object collections extras
+  // //////////////////////
+
+  public CharSequence[] getCharSequenceArray(String name) {
+    return typed(name, CharSequence[].class);
+  }
+
+  public Parcelable[] getParcelableArray(String name) {
+    return typed(name, Parcelable[].class);
+  }
+
+  public String[] getStringArray(String name) {
+    return typed(name, String[].class);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ArrayList<CharSequence> getCharSequenceList(String name) {
+    return typed(name, ArrayList.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ArrayList<Integer> getIntegerList(String name) {
+    return typed(name, ArrayList.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T extends Parcelable> ArrayList<T> getParcelableList(String name) {
+    return typed(name, ArrayList.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  public ArrayList<String> getStringList(String name) {
+    return typed(name, ArrayList.class);
+  }
+
+  // //////////////////////
+  // Private methods
+  // //////////////////////
+
+  private void unspill(String name, int kind) {
+    Object value = value(name);
+    if (!(value instanceof SpillHandle) || ((SpillHandle) value).kind() != kind) {
+      return;
+    }
+    SpillHandle handle = (SpillHandle) value;
+    Object payload = MISSING;
+    if (mSpill != null) {
+      try {
+        payload = kind == SpillHandle.KIND_PARCELABLE
+            ? mSpill.readParcelable(handle, getClass().getClassLoader())
+            : mSpill.readSerializable(handle);
+        mSpilled.add(handle);
+      } catch (IOException e) {
+        // Reported as missing below.
+      }
+    }
+    if (payload == MISSING) {
+      mListener.onMissing(name);
+    }
+    mValues.put(name, payload);
+  }
+
+  private <T> T typed(String name, Class<T> type) {
+    Object value = value(name);
+    if (value == MISSING) {
+      return null;
+    }
+    if (!type.isInstance(value)) {
+      mListener.onWrongType(name, type, value);
+      mValues.put(name, MISSING);
+      return null;
+    }
+    return type.cast(value);
+  }
+
+  private Object value(String name) {
+    Object value = mValues.get(name);
+    if (value == null) {
+      value = mExtras != null ? mExtras.get(name) : null;
+      if (value == null) {
+        value = MISSING;
+        mListener.onMissing(name);
+      }
+      mValues.put(name, value);
+    }
+    return value;
+  }
+}
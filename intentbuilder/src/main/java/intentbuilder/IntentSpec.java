@@ -0,0 +1,713 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.net.Uri;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable, plain Java description of an intent. It has no dependency on the Android runtime, so
+ * specs can be built, compared and stored on any JVM; {@link IntentBuilder#from(IntentSpec)} turns
+ * one into a real {@link Intent}.
+ * <p>
+ * Data is kept as a string and the component as package and class names. Unlike {@link Intent},
+ * setting the data does not clear the type nor the other way around. Bundle and Parcelable extras
+ * are not supported.
+ * <p>
+ * Array and list extras are copied when set and when read, so a spec never shares them with its
+ * callers. Serializable extras are kept by reference and must not be modified.
+ */
+public final class IntentSpec {
+
+  final String mAction;
+  final String mData;
+  final String mType;
+  final String mPackage;
+  final String mComponentPackage;
+  final String mComponentClass;
+  final int mFlags;
+  final String[] mCategories;
+
+  final String[] mNames;
+  final ExtraType[] mTypes;
+  final long[] mBits;
+  final Object[] mValues;
+
+  IntentSpec(String action, String data, String type, String pack, String componentPackage,
+      String componentClass, int flags, String[] categories, String[] names, ExtraType[] types,
+      long[] bits, Object[] values) {
+    mAction = action;
+    mData = data;
+    mType = type;
+    mPackage = pack;
+    mComponentPackage = componentPackage;
+    mComponentClass = componentClass;
+    mFlags = flags;
+    mCategories = categories;
+    mNames = names;
+    mTypes = types;
+    mBits = bits;
+    mValues = values;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public String getAction() {
+    return mAction;
+  }
+
+  public String getData() {
+    return mData;
+  }
+
+  public String getType() {
+    return mType;
+  }
+
+  public String getPackage() {
+    return mPackage;
+  }
+
+  public String getComponentPackage() {
+    return mComponentPackage;
+  }
+
+  public String getComponentClass() {
+    return mComponentClass;
+  }
+
+  public int getFlags() {
+    return mFlags;
+  }
+
+  public Set<String> getCategories() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(mCategories)));
+  }
+
+  public int extrasSize() {
+    return mNames.length;
+  }
+
+  /**
+   * Extra names in insertion order.
+   */
+  public List<String> extraNames() {
+    return Collections.unmodifiableList(Arrays.asList(mNames));
+  }
+
+  public boolean hasExtra(String name) {
+    return indexOf(name) >= 0;
+  }
+
+  /**
+   * Returns the extra, primitives boxed, or null if it is not set. Arrays and lists are returned
+   * as copies.
+   */
+  public Object getExtra(String name) {
+    int index = indexOf(name);
+    return index < 0 ? null : value(mTypes[index], mBits[index], copy(mTypes[index],
+        mValues[index]));
+  }
+
+  void applyTo(Intent intent) {
+    if (mAction != null) {
+      intent.setAction(mAction);
+    }
+    if (mData != null && mType != null) {
+      intent.setDataAndType(Uri.parse(mData), mType);
+    } else if (mData != null) {
+      intent.setData(Uri.parse(mData));
+    } else if (mType != null) {
+      intent.setType(mType);
+    }
+    if (mComponentClass != null) {
+      intent.setClassName(mComponentPackage, mComponentClass);
+    }
+    if (mPackage != null) {
+      intent.setPackage(mPackage);
+    }
+    if (mFlags != 0) {
+      intent.addFlags(mFlags);
+    }
+    for (String category : mCategories) {
+      intent.addCategory(category);
+    }
+    for (int i = 0; i < mNames.length; i++) {
+      mTypes[i].put(intent, mNames[i], mBits[i], copy(mTypes[i], mValues[i]));
+    }
+  }
+
+  private int indexOf(String name) {
+    for (int i = 0; i < mNames.length; i++) {
+      if (mNames[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static Object value(ExtraType type, long bits, Object value) {
+    switch (type) {
+      case BOOLEAN:
+        return bits != 0;
+      case BYTE:
+        return (byte) bits;
+      case CHAR:
+        return (char) bits;
+      case DOUBLE:
+        return Double.longBitsToDouble(bits);
+      case FLOAT:
+        return Float.intBitsToFloat((int) bits);
+      case INT:
+        return (int) bits;
+      case LONG:
+        return bits;
+      case SHORT:
+        return (short) bits;
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Returns a copy of an array or list value, or {@code value} itself for every other type.
+   */
+  static Object copy(ExtraType type, Object value) {
+    if (value == null) {
+      return null;
+    }
+    switch (type) {
+      case BOOLEAN_ARRAY:
+        return ((boolean[]) value).clone();
+      case BYTE_ARRAY:
+        return ((byte[]) value).clone();
+      case CHAR_ARRAY:
+        return ((char[]) value).clone();
+      case DOUBLE_ARRAY:
+        return ((double[]) value).clone();
+      case FLOAT_ARRAY:
+        return ((float[]) value).clone();
+      case INT_ARRAY:
+        return ((int[]) value).clone();
+      case LONG_ARRAY:
+        return ((long[]) value).clone();
+      case SHORT_ARRAY:
+        return ((short[]) value).clone();
+      case CHAR_SEQUENCE_ARRAY:
+      case STRING_ARRAY:
+        return ((Object[]) value).clone();
+      case CHAR_SEQUENCE_LIST:
+      case INTEGER_LIST:
+      case STRING_LIST:
+        return new ArrayList<>((ArrayList<?>) value);
+      default:
+        return value;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof IntentSpec)) {
+      return false;
+    }
+    IntentSpec other = (IntentSpec) o;
+    if (mFlags != other.mFlags
+        || !equal(mAction, other.mAction)
+        || !equal(mData, other.mData)
+        || !equal(mType, other.mType)
+        || !equal(mPackage, other.mPackage)
+        || !equal(mComponentPackage, other.mComponentPackage)
+        || !equal(mComponentClass, other.mComponentClass)
+        || !containsAll(mCategories, other.mCategories)
+        || !containsAll(other.mCategories, mCategories)
+        || mNames.length != other.mNames.length) {
+      return false;
+    }
+    for (int i = 0; i < mNames.length; i++) {
+      int j = other.indexOf(mNames[i]);
+      if (j < 0
+          || mTypes[i] != other.mTypes[j]
+          || mBits[i] != other.mBits[j]
+          || !Arrays.deepEquals(new Object[]{mValues[i]}, new Object[]{other.mValues[j]})) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = mFlags;
+    hash = 31 * hash + hashCode(mAction);
+    hash = 31 * hash + hashCode(mData);
+    hash = 31 * hash + hashCode(mType);
+    hash = 31 * hash + hashCode(mPackage);
+    hash = 31 * hash + hashCode(mComponentClass);
+    // Same value as getCategories().hashCode(), without building the set.
+    int categories = 0;
+    for (int i = 0; i < mCategories.length; i++) {
+      if (indexOf(mCategories, mCategories[i]) == i) {
+        categories += mCategories[i].hashCode();
+      }
+    }
+    hash = 31 * hash + categories;
+    int extras = 0;
+    for (int i = 0; i < mNames.length; i++) {
+      extras += mNames[i].hashCode() ^ (int) (mBits[i] ^ (mBits[i] >>> 32))
+          ^ Arrays.deepHashCode(new Object[]{mValues[i]});
+    }
+    return 31 * hash + extras;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder b = new StringBuilder("IntentSpec{");
+    if (mAction != null) {
+      b.append("act=").append(mAction).append(' ');
+    }
+    if (mData != null) {
+      b.append("dat=").append(mData).append(' ');
+    }
+    if (mType != null) {
+      b.append("typ=").append(mType).append(' ');
+    }
+    if (mComponentClass != null) {
+      b.append("cmp=").append(mComponentPackage).append('/').append(mComponentClass).append(' ');
+    }
+    if (mPackage != null) {
+      b.append("pkg=").append(mPackage).append(' ');
+    }
+    if (mFlags != 0) {
+      b.append("flg=0x").append(Integer.toHexString(mFlags)).append(' ');
+    }
+    if (mCategories.length > 0) {
+      b.append("cat=").append(Arrays.toString(mCategories)).append(' ');
+    }
+    if (mNames.length > 0) {
+      b.append("(has extras) ");
+    }
+    if (b.charAt(b.length() - 1) == ' ') {
+      b.setLength(b.length() - 1);
+    }
+    return b.append('}').toString();
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static int hashCode(Object value) {
+    return value == null ? 0 : value.hashCode();
+  }
+
+  /**
+   * Compares categories as sets, so order and duplicates in a decoded array do not matter.
+   */
+  private static boolean containsAll(String[] strings, String[] values) {
+    for (String value : values) {
+      if (indexOf(strings, value) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(String[] strings, String value) {
+    for (int i = 0; i < strings.length; i++) {
+      if (strings[i].equals(value)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Fluent builder for {@link IntentSpec}, applying the same {@link PreConditions} rules as
+   * {@link IntentBuilder}. Setting an extra twice keeps the last value.
+   */
+  public static final class Builder {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private String mAction;
+    private String mData;
+    private String mType;
+    private String mPackage;
+    private String mComponentPackage;
+    private String mComponentClass;
+    private int mFlags;
+    private final LinkedHashSet<String> mCategories = new LinkedHashSet<>();
+
+    private final HashMap<String, Integer> mIndex = new HashMap<>();
+    private String[] mNames = new String[DEFAULT_CAPACITY];
+    private ExtraType[] mTypes = new ExtraType[DEFAULT_CAPACITY];
+    private long[] mBits = new long[DEFAULT_CAPACITY];
+    private Object[] mValues = new Object[DEFAULT_CAPACITY];
+    private int mSize;
+
+    Builder() {
+    }
+
+    public Builder action(String action) {
+      validateNotBlank(action, "Action");
+      mAction = action;
+      return this;
+    }
+
+    public Builder data(String data) {
+      validateNotBlank(data, "Data");
+      mData = data;
+      return this;
+    }
+
+    public Builder type(String type) {
+      validateNotBlank(type, "Type");
+      mType = type;
+      return this;
+    }
+
+    public Builder className(String packageName, String className) {
+      validateNotBlank(packageName, "PackageName");
+      validateNotBlank(className, "ClassName");
+      mComponentPackage = packageName;
+      mComponentClass = className;
+      return this;
+    }
+
+    public Builder setPackage(String pack) {
+      validateNotBlank(pack, "Package");
+      mPackage = pack;
+      return this;
+    }
+
+    public Builder flag(int flag) {
+      mFlags |= flag;
+      return this;
+    }
+
+    public Builder flags(int... flags) {
+      validateNotEmpty(flags, "Flags");
+      for (int flag : flags) {
+        mFlags |= flag;
+      }
+      return this;
+    }
+
+    public Builder categories(String... categories) {
+      validateNotEmpty(categories, "Categories");
+      Collections.addAll(mCategories, categories);
+      return this;
+    }
+
+    // //////////////////////
+    // Primitive extras
+    // //////////////////////
+
+    public Builder extra(String name, boolean value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.BOOLEAN, value ? 1 : 0, null);
+    }
+
+    public Builder extra(String name, byte value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.BYTE, value, null);
+    }
+
+    public Builder extra(String name, char value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.CHAR, value, null);
+    }
+
+    public Builder extra(String name, double value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    public Builder extra(String name, float value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.FLOAT, Float.floatToRawIntBits(value), null);
+    }
+
+    public Builder extra(String name, int value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.INT, value, null);
+    }
+
+    public Builder extra(String name, long value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.LONG, value, null);
+    }
+
+    public Builder extra(String name, short value) {
+      validateNotBlank(name, "Name");
+      return put(name, ExtraType.SHORT, value, null);
+    }
+
+    public Builder extra(String name, String value) {
+      validateNotBlank(name, "Name");
+      validateNotNull(value, "Value");
+      return put(name, ExtraType.STRING, 0, value);
+    }
+
+    // //////////////////////
+    // Primitive Arrays extras
+    // //////////////////////
+
+    public Builder extra(String name, byte[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.BYTE_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, boolean[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.BOOLEAN_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, char[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.CHAR_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, double[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.DOUBLE_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, float[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.FLOAT_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, int[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.INT_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, long[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.LONG_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, short[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.SHORT_ARRAY, 0, value);
+    }
+
+    // //////////////////////
+    // Object extras
+    // //////////////////////
+
+    public Builder extra(String name, CharSequence value) {
+      validateNotBlank(name, "Name");
+      validateNotBlank(value, "Value");
+      return put(name, ExtraType.CHAR_SEQUENCE, 0, value);
+    }
+
+    public Builder extra(String name, Serializable value) {
+      validateNotBlank(name, "Name");
+      validateNotNull(value, "Value");
+      return put(name, ExtraType.SERIALIZABLE, 0, value);
+    }
+
+    // //////////////////////
+    // Array extras
+    // //////////////////////
+
+    public Builder extra(String name, CharSequence[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.CHAR_SEQUENCE_ARRAY, 0, value);
+    }
+
+    public Builder extra(String name, String[] value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.STRING_ARRAY, 0, value);
+    }
+
+    // //////////////////////
+    // List extras
+    // //////////////////////
+
+    public Builder extraCharSequenceList(String name, ArrayList<CharSequence> value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.CHAR_SEQUENCE_LIST, 0, value);
+    }
+
+    public Builder extraIntegerList(String name, ArrayList<Integer> value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.INTEGER_LIST, 0, value);
+    }
+
+    public Builder extraStringList(String name, ArrayList<String> value) {
+      validateNotBlank(name, "Name");
+      validateNotEmpty(value, "Value");
+      return put(name, ExtraType.STRING_LIST, 0, value);
+    }
+
+    public IntentSpec build() {
+      String[] names = new String[mSize];
+      ExtraType[] types = new ExtraType[mSize];
+      long[] bits = new long[mSize];
+      Object[] values = new Object[mSize];
+      System.arraycopy(mNames, 0, names, 0, mSize);
+      System.arraycopy(mTypes, 0, types, 0, mSize);
+      System.arraycopy(mBits, 0, bits, 0, mSize);
+      System.arraycopy(mValues, 0, values, 0, mSize);
+      return new IntentSpec(mAction, mData, mType, mPackage, mComponentPackage, mComponentClass,
+          mFlags, mCategories.toArray(new String[mCategories.size()]), names, types, bits, values);
+    }
+
+    Builder put(String name, ExtraType type, long bits, Object value) {
+      Integer index = mIndex.get(name);
+      int i;
+      if (index != null) {
+        i = index;
+      } else {
+        if (mSize == mNames.length) {
+          grow(mSize + (mSize >> 1) + 1);
+        }
+        i = mSize++;
+        mIndex.put(name, i);
+        mNames[i] = name;
+      }
+      mTypes[i] = type;
+      mBits[i] = bits;
+      mValues[i] = copy(type, value);
+      return this;
+    }
+
+    private void grow(int capacity) {
+      String[] names = new String[capacity];
+      ExtraType[] types = new ExtraType[capacity];
+      long[] bits = new long[capacity];
+      Object[] values = new Object[capacity];
+      System.arraycopy(mNames, 0, names, 0, mSize);
+      System.arraycopy(mTypes, 0, types, 0, mSize);
+      System.arraycopy(mBits, 0, bits, 0, mSize);
+      System.arraycopy(mValues, 0, values, 0, mSize);
+      mNames = names;
+      mTypes = types;
+      mBits = bits;
+      mValues = values;
+    }
+
+    private static void validateNotNull(Object param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotNull(param, message);
+      }
+    }
+
+    private static void validateNotBlank(CharSequence param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotBlank(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(boolean[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(byte[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(char[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(double[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(float[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(int[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(long[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(short[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(CharSequence[] param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+
+    private static void validateNotEmpty(List param, String message) {
+      if (PreConditions.enabled()) {
+        PreConditions.validateNotEmpty(param, message);
+      }
+    }
+  }
+}
@@ -0,0 +1,917 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compact binary format for {@link IntentSpec}.
+ * <p>
+ * A record starts with a version byte and a table of the distinct strings it uses, followed by
+ * the intent fields with every string written as a table index. Integers are varints (zigzag for
+ * signed values), floats and doubles are fixed width. {@link #write(IntentSpec, ByteBuffer)} and
+ * {@link #read(ByteBuffer)} frame records with a varint length so they can be streamed;
+ * {@link Writer} and {@link Reader} do the same over NIO channels.
+ * <p>
+ * CharSequence extras are stored as strings, so any styling spans are lost.
+ * <p>
+ * Serializable extras are written with Java serialization. Reading them back only resolves the
+ * classes the caller lists, plus {@link String}, the boxed primitives and their supertypes, so a
+ * tampered record cannot instantiate arbitrary classes. A record holding any other class fails
+ * to decode.
+ */
+public final class IntentSpecCodec {
+
+  public static final int VERSION = 1;
+
+  /**
+   * Largest record accepted in a frame. Longer records are rejected on write, and a longer frame
+   * length on read is treated as corrupt instead of growing the read buffer to match.
+   */
+  public static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // Classes every Serializable extra may reference without being listed by the caller.
+  private static final Set<String> SERIALIZABLE_BASE = new HashSet<>(Arrays.asList(
+      "java.lang.String", "java.lang.Boolean", "java.lang.Byte", "java.lang.Character",
+      "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float",
+      "java.lang.Double", "java.lang.Number", "java.lang.Enum"));
+
+  private static final int HAS_ACTION = 1;
+  private static final int HAS_DATA = 1 << 1;
+  private static final int HAS_TYPE = 1 << 2;
+  private static final int HAS_PACKAGE = 1 << 3;
+  private static final int HAS_COMPONENT = 1 << 4;
+
+  // Wire tags, independent of the ExtraType declaration order. Append only.
+  private static final ExtraType[] TAGS = {
+      ExtraType.BOOLEAN, ExtraType.BYTE, ExtraType.CHAR, ExtraType.DOUBLE, ExtraType.FLOAT,
+      ExtraType.INT, ExtraType.LONG, ExtraType.SHORT, ExtraType.STRING,
+      ExtraType.BOOLEAN_ARRAY, ExtraType.BYTE_ARRAY, ExtraType.CHAR_ARRAY, ExtraType.DOUBLE_ARRAY,
+      ExtraType.FLOAT_ARRAY, ExtraType.INT_ARRAY, ExtraType.LONG_ARRAY, ExtraType.SHORT_ARRAY,
+      ExtraType.CHAR_SEQUENCE, ExtraType.SERIALIZABLE, ExtraType.CHAR_SEQUENCE_ARRAY,
+      ExtraType.STRING_ARRAY, ExtraType.CHAR_SEQUENCE_LIST, ExtraType.INTEGER_LIST,
+      ExtraType.STRING_LIST
+  };
+
+  private IntentSpecCodec() {
+  }
+
+  // //////////////////////
+  // Records
+  // //////////////////////
+
+  public static byte[] encode(IntentSpec spec) {
+    PreConditions.validateNotNull(spec, "IntentSpec");
+    return new Encoder().encode(spec).toByteArray();
+  }
+
+  public static IntentSpec decode(byte[] bytes) {
+    return decode(bytes, new Class<?>[0]);
+  }
+
+  /**
+   * Decodes {@code bytes}, resolving Serializable extras only against {@code serializable}.
+   */
+  public static IntentSpec decode(byte[] bytes, Class<?>... serializable) {
+    PreConditions.validateNotNull(bytes, "Bytes");
+    return decode(ByteBuffer.wrap(bytes), bytes.length, serializableNames(serializable));
+  }
+
+  // //////////////////////
+  // Framed streams
+  // //////////////////////
+
+  /**
+   * Appends {@code spec} to {@code out} as a length-prefixed record.
+   *
+   * @throws java.nio.BufferOverflowException if {@code out} has not enough room left
+   */
+  public static void write(IntentSpec spec, ByteBuffer out) {
+    PreConditions.validateNotNull(spec, "IntentSpec");
+    Sink record = frameable(new Encoder().encode(spec));
+    Sink frame = new Sink(5);
+    frame.writeVarint(record.mSize);
+    out.put(frame.mBytes, 0, frame.mSize);
+    out.put(record.mBytes, 0, record.mSize);
+  }
+
+  /**
+   * Reads the next length-prefixed record from {@code in}. Returns null and leaves the position
+   * untouched if {@code in} does not hold a complete record.
+   *
+   * @throws IllegalArgumentException if the frame length or the record is malformed
+   */
+  public static IntentSpec read(ByteBuffer in) {
+    return read(in, Collections.<String>emptySet());
+  }
+
+  /**
+   * Same as {@link #read(ByteBuffer)}, resolving Serializable extras only against
+   * {@code serializable}.
+   */
+  public static IntentSpec read(ByteBuffer in, Class<?>... serializable) {
+    return read(in, serializableNames(serializable));
+  }
+
+  private static IntentSpec read(ByteBuffer in, Set<String> serializable) {
+    int start = in.position();
+    int length = readFrameLength(in);
+    if (length < 0 || in.remaining() < length) {
+      in.position(start);
+      return null;
+    }
+    return decode(in, length, serializable);
+  }
+
+  /**
+   * Writes framed records to a channel through a reusable buffer.
+   */
+  public static final class Writer {
+    private final WritableByteChannel mChannel;
+    private ByteBuffer mBuffer;
+
+    public Writer(WritableByteChannel channel) {
+      this(channel, 8192);
+    }
+
+    public Writer(WritableByteChannel channel, int bufferSize) {
+      PreConditions.validateNotNull(channel, "Channel");
+      PreConditions.validatePositive(bufferSize, "Buffer size");
+      mChannel = channel;
+      mBuffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    public Writer write(IntentSpec spec) throws IOException {
+      PreConditions.validateNotNull(spec, "IntentSpec");
+      Sink record = frameable(new Encoder().encode(spec));
+      int frameSize = record.mSize + 5;
+      if (mBuffer.remaining() < frameSize) {
+        flush();
+        if (mBuffer.capacity() < frameSize) {
+          mBuffer = ByteBuffer.allocate(frameSize);
+        }
+      }
+      Sink frame = new Sink(5);
+      frame.writeVarint(record.mSize);
+      mBuffer.put(frame.mBytes, 0, frame.mSize);
+      mBuffer.put(record.mBytes, 0, record.mSize);
+      return this;
+    }
+
+    public void flush() throws IOException {
+      mBuffer.flip();
+      while (mBuffer.hasRemaining()) {
+        mChannel.write(mBuffer);
+      }
+      mBuffer.clear();
+    }
+  }
+
+  /**
+   * Reads framed records from a channel through a reusable buffer.
+   */
+  public static final class Reader {
+    private final ReadableByteChannel mChannel;
+    private final Set<String> mSerializable;
+    private ByteBuffer mBuffer;
+    private boolean mEof;
+
+    public Reader(ReadableByteChannel channel) {
+      this(channel, 8192);
+    }
+
+    public Reader(ReadableByteChannel channel, int bufferSize) {
+      this(channel, bufferSize, new Class<?>[0]);
+    }
+
+    /**
+     * @param serializable the classes Serializable extras may be resolved against
+     */
+    public Reader(ReadableByteChannel channel, int bufferSize, Class<?>... serializable) {
+      PreConditions.validateNotNull(channel, "Channel");
+      PreConditions.validatePositive(bufferSize, "Buffer size");
+      mChannel = channel;
+      mSerializable = serializableNames(serializable);
+      mBuffer = ByteBuffer.allocate(bufferSize);
+      mBuffer.flip();
+    }
+
+    /**
+     * Returns the next record, or null at the end of the channel.
+     *
+     * @throws EOFException if the channel ends in the middle of a record
+     */
+    public IntentSpec next() throws IOException {
+      while (true) {
+        IntentSpec spec = read(mBuffer, mSerializable);
+        if (spec != null) {
+          return spec;
+        }
+        if (mEof) {
+          if (mBuffer.hasRemaining()) {
+            throw new EOFException("Truncated IntentSpec record");
+          }
+          return null;
+        }
+        fill();
+      }
+    }
+
+    private void fill() throws IOException {
+      mBuffer.compact();
+      if (!mBuffer.hasRemaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(mBuffer.capacity() * 2);
+        mBuffer.flip();
+        larger.put(mBuffer);
+        mBuffer = larger;
+      }
+      if (mChannel.read(mBuffer) < 0) {
+        mEof = true;
+      }
+      mBuffer.flip();
+    }
+  }
+
+  // //////////////////////
+  // Encoding
+  // //////////////////////
+
+  private static final class Encoder {
+    private final HashMap<String, Integer> mIndex = new HashMap<>();
+    private final ArrayList<String> mStrings = new ArrayList<>();
+    private final Sink mBody = new Sink(64);
+
+    Sink encode(IntentSpec spec) {
+      int present = 0;
+      if (spec.mAction != null) {
+        present |= HAS_ACTION;
+      }
+      if (spec.mData != null) {
+        present |= HAS_DATA;
+      }
+      if (spec.mType != null) {
+        present |= HAS_TYPE;
+      }
+      if (spec.mPackage != null) {
+        present |= HAS_PACKAGE;
+      }
+      if (spec.mComponentClass != null) {
+        present |= HAS_COMPONENT;
+      }
+      mBody.writeVarint(present);
+      writeStringIf(spec.mAction);
+      writeStringIf(spec.mData);
+      writeStringIf(spec.mType);
+      writeStringIf(spec.mPackage);
+      if (spec.mComponentClass != null) {
+        writeString(spec.mComponentPackage);
+        writeString(spec.mComponentClass);
+      }
+      mBody.writeVarint(spec.mFlags);
+      mBody.writeVarint(spec.mCategories.length);
+      for (String category : spec.mCategories) {
+        writeString(category);
+      }
+      mBody.writeVarint(spec.mNames.length);
+      for (int i = 0; i < spec.mNames.length; i++) {
+        writeString(spec.mNames[i]);
+        writeExtra(spec.mTypes[i], spec.mBits[i], spec.mValues[i]);
+      }
+
+      Sink out = new Sink(mBody.mSize + 16 * mStrings.size() + 2);
+      out.writeByte(VERSION);
+      out.writeVarint(mStrings.size());
+      for (String string : mStrings) {
+        byte[] utf8 = string.getBytes(UTF_8);
+        out.writeVarint(utf8.length);
+        out.write(utf8, 0, utf8.length);
+      }
+      out.write(mBody.mBytes, 0, mBody.mSize);
+      return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeExtra(ExtraType type, long bits, Object value) {
+      mBody.writeByte(tag(type));
+      Sink b = mBody;
+      switch (type) {
+        case BOOLEAN:
+        case BYTE:
+          b.writeByte((int) bits);
+          break;
+        case CHAR:
+          b.writeVarint((int) bits);
+          break;
+        case SHORT:
+        case INT:
+        case LONG:
+          b.writeVarlong(zigzag(bits));
+          break;
+        case FLOAT:
+          b.writeFixed((int) bits, 4);
+          break;
+        case DOUBLE:
+          b.writeFixed(bits, 8);
+          break;
+        case STRING:
+        case CHAR_SEQUENCE:
+          writeString(value.toString());
+          break;
+        case BOOLEAN_ARRAY: {
+          boolean[] array = (boolean[]) value;
+          b.writeVarint(array.length);
+          for (boolean element : array) {
+            b.writeByte(element ? 1 : 0);
+          }
+          break;
+        }
+        case BYTE_ARRAY: {
+          byte[] array = (byte[]) value;
+          b.writeVarint(array.length);
+          b.write(array, 0, array.length);
+          break;
+        }
+        case CHAR_ARRAY: {
+          char[] array = (char[]) value;
+          b.writeVarint(array.length);
+          for (char element : array) {
+            b.writeVarint(element);
+          }
+          break;
+        }
+        case SHORT_ARRAY: {
+          short[] array = (short[]) value;
+          b.writeVarint(array.length);
+          for (short element : array) {
+            b.writeVarlong(zigzag(element));
+          }
+          break;
+        }
+        case INT_ARRAY: {
+          int[] array = (int[]) value;
+          b.writeVarint(array.length);
+          for (int element : array) {
+            b.writeVarlong(zigzag(element));
+          }
+          break;
+        }
+        case LONG_ARRAY: {
+          long[] array = (long[]) value;
+          b.writeVarint(array.length);
+          for (long element : array) {
+            b.writeVarlong(zigzag(element));
+          }
+          break;
+        }
+        case FLOAT_ARRAY: {
+          float[] array = (float[]) value;
+          b.writeVarint(array.length);
+          for (float element : array) {
+            b.writeFixed(Float.floatToRawIntBits(element), 4);
+          }
+          break;
+        }
+        case DOUBLE_ARRAY: {
+          double[] array = (double[]) value;
+          b.writeVarint(array.length);
+          for (double element : array) {
+            b.writeFixed(Double.doubleToRawLongBits(element), 8);
+          }
+          break;
+        }
+        case STRING_ARRAY:
+        case CHAR_SEQUENCE_ARRAY: {
+          CharSequence[] array = (CharSequence[]) value;
+          b.writeVarint(array.length);
+          for (CharSequence element : array) {
+            writeNullableString(element);
+          }
+          break;
+        }
+        case STRING_LIST:
+        case CHAR_SEQUENCE_LIST: {
+          List<? extends CharSequence> list = (List<? extends CharSequence>) value;
+          b.writeVarint(list.size());
+          for (CharSequence element : list) {
+            writeNullableString(element);
+          }
+          break;
+        }
+        case INTEGER_LIST: {
+          List<Integer> list = (List<Integer>) value;
+          b.writeVarint(list.size());
+          for (Integer element : list) {
+            b.writeVarlong(element == null ? 0 : zigzag(element) + 1);
+          }
+          break;
+        }
+        case SERIALIZABLE: {
+          byte[] bytes = serialize((Serializable) value);
+          b.writeVarint(bytes.length);
+          b.write(bytes, 0, bytes.length);
+          break;
+        }
+        default:
+          throw new IllegalArgumentException("Unsupported extra type " + type);
+      }
+    }
+
+    private void writeStringIf(String value) {
+      if (value != null) {
+        writeString(value);
+      }
+    }
+
+    private void writeNullableString(CharSequence value) {
+      mBody.writeVarint(value == null ? 0 : index(value.toString()) + 1);
+    }
+
+    private void writeString(String value) {
+      mBody.writeVarint(index(value));
+    }
+
+    private int index(String value) {
+      Integer index = mIndex.get(value);
+      if (index == null) {
+        index = mStrings.size();
+        mIndex.put(value, index);
+        mStrings.add(value);
+      }
+      return index;
+    }
+  }
+
+  // //////////////////////
+  // Decoding
+  // //////////////////////
+
+  static IntentSpec decode(ByteBuffer buffer, int length, Set<String> serializable) {
+    int end = buffer.position() + length;
+    // Reads stop at the end of the record instead of running into the next one.
+    ByteBuffer in = buffer.slice();
+    in.limit(length);
+    try {
+      int version = in.get() & 0xff;
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported IntentSpec format version " + version);
+      }
+      String[] strings = new String[readCount(in, 1)];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = new String(readBytes(in, readCount(in, 1)), UTF_8);
+      }
+      int present = readVarint(in);
+      String action = (present & HAS_ACTION) != 0 ? strings[readVarint(in)] : null;
+      String data = (present & HAS_DATA) != 0 ? strings[readVarint(in)] : null;
+      String type = (present & HAS_TYPE) != 0 ? strings[readVarint(in)] : null;
+      String pack = (present & HAS_PACKAGE) != 0 ? strings[readVarint(in)] : null;
+      String componentPackage = null;
+      String componentClass = null;
+      if ((present & HAS_COMPONENT) != 0) {
+        componentPackage = strings[readVarint(in)];
+        componentClass = strings[readVarint(in)];
+      }
+      int flags = readVarint(in);
+      String[] categories = new String[readCount(in, 1)];
+      for (int i = 0; i < categories.length; i++) {
+        categories[i] = strings[readVarint(in)];
+      }
+      // A name index and a tag per extra.
+      int size = readCount(in, 2);
+      String[] names = new String[size];
+      ExtraType[] types = new ExtraType[size];
+      long[] bits = new long[size];
+      Object[] values = new Object[size];
+      for (int i = 0; i < size; i++) {
+        names[i] = strings[readVarint(in)];
+        types[i] = TAGS[in.get() & 0xff];
+        readExtra(in, strings, serializable, types[i], bits, values, i);
+      }
+      if (in.hasRemaining()) {
+        throw new IllegalArgumentException("Malformed IntentSpec record");
+      }
+      return new IntentSpec(action, data, type, pack, componentPackage, componentClass, flags,
+          categories, names, types, bits, values);
+    } catch (RuntimeException e) {
+      if (e instanceof IllegalArgumentException) {
+        throw e;
+      }
+      throw new IllegalArgumentException("Malformed IntentSpec record", e);
+    } finally {
+      buffer.position(end);
+    }
+  }
+
+  private static void readExtra(ByteBuffer in, String[] strings, Set<String> serializable,
+      ExtraType type, long[] bits, Object[] values, int i) {
+    switch (type) {
+      case BOOLEAN:
+      case BYTE:
+        bits[i] = in.get();
+        break;
+      case CHAR:
+        bits[i] = readVarint(in);
+        break;
+      case SHORT:
+      case INT:
+      case LONG:
+        bits[i] = unzigzag(readVarlong(in));
+        break;
+      case FLOAT:
+        bits[i] = in.getInt();
+        break;
+      case DOUBLE:
+        bits[i] = in.getLong();
+        break;
+      case STRING:
+      case CHAR_SEQUENCE:
+        values[i] = strings[readVarint(in)];
+        break;
+      case BOOLEAN_ARRAY: {
+        boolean[] array = new boolean[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = in.get() != 0;
+        }
+        values[i] = array;
+        break;
+      }
+      case BYTE_ARRAY: {
+        byte[] array = new byte[readCount(in, 1)];
+        in.get(array);
+        values[i] = array;
+        break;
+      }
+      case CHAR_ARRAY: {
+        char[] array = new char[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = (char) readVarint(in);
+        }
+        values[i] = array;
+        break;
+      }
+      case SHORT_ARRAY: {
+        short[] array = new short[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = (short) unzigzag(readVarlong(in));
+        }
+        values[i] = array;
+        break;
+      }
+      case INT_ARRAY: {
+        int[] array = new int[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = (int) unzigzag(readVarlong(in));
+        }
+        values[i] = array;
+        break;
+      }
+      case LONG_ARRAY: {
+        long[] array = new long[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = unzigzag(readVarlong(in));
+        }
+        values[i] = array;
+        break;
+      }
+      case FLOAT_ARRAY: {
+        float[] array = new float[readCount(in, 4)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = in.getFloat();
+        }
+        values[i] = array;
+        break;
+      }
+      case DOUBLE_ARRAY: {
+        double[] array = new double[readCount(in, 8)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = in.getDouble();
+        }
+        values[i] = array;
+        break;
+      }
+      case STRING_ARRAY: {
+        String[] array = new String[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = readNullableString(in, strings);
+        }
+        values[i] = array;
+        break;
+      }
+      case CHAR_SEQUENCE_ARRAY: {
+        CharSequence[] array = new CharSequence[readCount(in, 1)];
+        for (int j = 0; j < array.length; j++) {
+          array[j] = readNullableString(in, strings);
+        }
+        values[i] = array;
+        break;
+      }
+      case STRING_LIST: {
+        int size = readCount(in, 1);
+        ArrayList<String> list = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+          list.add(readNullableString(in, strings));
+        }
+        values[i] = list;
+        break;
+      }
+      case CHAR_SEQUENCE_LIST: {
+        int size = readCount(in, 1);
+        ArrayList<CharSequence> list = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+          list.add(readNullableString(in, strings));
+        }
+        values[i] = list;
+        break;
+      }
+      case INTEGER_LIST: {
+        int size = readCount(in, 1);
+        ArrayList<Integer> list = new ArrayList<>(size);
+        for (int j = 0; j < size; j++) {
+          long value = readVarlong(in);
+          list.add(value == 0 ? null : (int) unzigzag(value - 1));
+        }
+        values[i] = list;
+        break;
+      }
+      case SERIALIZABLE: {
+        values[i] = deserialize(readBytes(in, readCount(in, 1)), serializable);
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Unsupported extra type " + type);
+    }
+  }
+
+  /**
+   * Reads an element count and checks that the rest of the record can hold that many elements of
+   * at least {@code width} bytes each, so a corrupt count cannot allocate a huge array.
+   */
+  private static int readCount(ByteBuffer in, int width) {
+    int count = readVarint(in);
+    if (count < 0 || count > in.remaining() / width) {
+      throw new IllegalArgumentException("Malformed IntentSpec record");
+    }
+    return count;
+  }
+
+  private static byte[] readBytes(ByteBuffer in, int size) {
+    byte[] bytes = new byte[size];
+    in.get(bytes);
+    return bytes;
+  }
+
+  private static String readNullableString(ByteBuffer in, String[] strings) {
+    int index = readVarint(in);
+    return index == 0 ? null : strings[index - 1];
+  }
+
+  // //////////////////////
+  // Primitives
+  // //////////////////////
+
+  private static int tag(ExtraType type) {
+    for (int i = 0; i < TAGS.length; i++) {
+      if (TAGS[i] == type) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported extra type " + type);
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Returns the frame length, or -1 if {@code in} ends inside the varint.
+   */
+  private static int readFrameLength(ByteBuffer in) {
+    long result = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      if (!in.hasRemaining()) {
+        return -1;
+      }
+      byte b = in.get();
+      result |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        if (result > MAX_RECORD_LENGTH) {
+          break;
+        }
+        return (int) result;
+      }
+    }
+    throw new IllegalArgumentException("Malformed IntentSpec frame length");
+  }
+
+  private static Sink frameable(Sink record) {
+    if (record.mSize > MAX_RECORD_LENGTH) {
+      throw new IllegalArgumentException("IntentSpec record of " + record.mSize
+          + " bytes is larger than " + MAX_RECORD_LENGTH);
+    }
+    return record;
+  }
+
+  private static int readVarint(ByteBuffer in) {
+    return (int) readVarlong(in);
+  }
+
+  private static long readVarlong(ByteBuffer in) {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      result |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  private static byte[] serialize(Serializable value) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(value);
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Value is not serializable", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes, Set<String> serializable) {
+    try {
+      ObjectInputStream in = new AllowListInputStream(new ByteArrayInputStream(bytes),
+          serializable);
+      return in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalArgumentException("Cannot deserialize extra", e);
+    }
+  }
+
+  static Set<String> serializableNames(Class<?>[] classes) {
+    PreConditions.validateNotNull(classes, "Serializable classes");
+    if (classes.length == 0) {
+      return Collections.emptySet();
+    }
+    HashSet<String> names = new HashSet<>();
+    for (Class<?> type : classes) {
+      PreConditions.validateNotNull(type, "Serializable class");
+      names.add(type.getName());
+    }
+    return names;
+  }
+
+  /**
+   * Refuses to resolve any class outside the allowed names, {@link #SERIALIZABLE_BASE} and
+   * arrays of those or of primitives.
+   */
+  private static final class AllowListInputStream extends ObjectInputStream {
+    private final Set<String> mAllowed;
+
+    AllowListInputStream(InputStream in, Set<String> allowed) throws IOException {
+      super(in);
+      mAllowed = allowed;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      String name = desc.getName();
+      if (!isAllowed(name)) {
+        throw new InvalidClassException(name, "Class is not allowed in a Serializable extra");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+      throw new InvalidClassException("Proxy classes are not allowed in a Serializable extra");
+    }
+
+    private boolean isAllowed(String name) {
+      int dimensions = 0;
+      while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+        dimensions++;
+      }
+      if (dimensions > 0) {
+        // Element descriptor: a single primitive letter or Lname;
+        if (name.length() == dimensions + 1) {
+          return true;
+        }
+        if (name.charAt(dimensions) != 'L' || !name.endsWith(";")) {
+          return false;
+        }
+        name = name.substring(dimensions + 1, name.length() - 1);
+      }
+      return mAllowed.contains(name) || SERIALIZABLE_BASE.contains(name);
+    }
+  }
+
+  /**
+   * Growable byte array.
+   */
+  private static final class Sink {
+    byte[] mBytes;
+    int mSize;
+
+    Sink(int capacity) {
+      mBytes = new byte[capacity];
+    }
+
+    void writeByte(int b) {
+      ensure(1);
+      mBytes[mSize++] = (byte) b;
+    }
+
+    void write(byte[] bytes, int offset, int length) {
+      ensure(length);
+      System.arraycopy(bytes, offset, mBytes, mSize, length);
+      mSize += length;
+    }
+
+    void writeVarint(int value) {
+      writeVarlong(value & 0xffffffffL);
+    }
+
+    void writeVarlong(long value) {
+      ensure(10);
+      while ((value & ~0x7fL) != 0) {
+        mBytes[mSize++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      mBytes[mSize++] = (byte) value;
+    }
+
+    /**
+     * Big-endian, matching {@link ByteBuffer#getInt()} and {@link ByteBuffer#getLong()}.
+     */
+    void writeFixed(long value, int width) {
+      ensure(width);
+      for (int shift = (width - 1) * 8; shift >= 0; shift -= 8) {
+        mBytes[mSize++] = (byte) (value >>> shift);
+      }
+    }
+
+    byte[] toByteArray() {
+      byte[] bytes = new byte[mSize];
+      System.arraycopy(mBytes, 0, bytes, 0, mSize);
+      return bytes;
+    }
+
+    private void ensure(int extra) {
+      if (mSize + extra > mBytes.length) {
+        byte[] bytes = new byte[Math.max(mBytes.length * 2, mSize + extra)];
+        System.arraycopy(mBytes, 0, bytes, 0, mSize);
+        mBytes = bytes;
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Structural equality for intents. Unlike {@link Intent#filterEquals(Intent)} it also compares
+ * flags, package and extras. Extras are compared by value, arrays element by element and nested
+ * bundles recursively; any other object, e.g. a Parcelable, by its own {@code equals}.
+ */
+public final class Intents {
+
+  private Intents() {
+  }
+
+  public static boolean equals(Intent a, Intent b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null) {
+      return false;
+    }
+    return sameHeader(a, b) && extrasEqual(a.getExtras(), b.getExtras());
+  }
+
+  public static int hashCode(Intent intent) {
+    return intent == null ? 0 : 31 * headerHashCode(intent) + extrasHashCode(intent.getExtras());
+  }
+
+  static boolean sameHeader(Intent a, Intent b) {
+    return a.getFlags() == b.getFlags()
+        && equal(a.getAction(), b.getAction())
+        && equal(a.getData(), b.getData())
+        && equal(a.getType(), b.getType())
+        && equal(a.getPackage(), b.getPackage())
+        && equal(a.getComponent(), b.getComponent())
+        && equal(a.getCategories(), b.getCategories());
+  }
+
+  static int headerHashCode(Intent intent) {
+    int hash = intent.getFlags();
+    hash = 31 * hash + hashCode(intent.getAction());
+    hash = 31 * hash + hashCode(intent.getData());
+    hash = 31 * hash + hashCode(intent.getType());
+    hash = 31 * hash + hashCode(intent.getPackage());
+    hash = 31 * hash + hashCode(intent.getComponent());
+    return 31 * hash + hashCode(intent.getCategories());
+  }
+
+  static boolean extrasEqual(Bundle a, Bundle b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null || a.size() != b.size()) {
+      return false;
+    }
+    Set<String> keys = a.keySet();
+    for (String key : keys) {
+      if (!b.containsKey(key) || !valueEquals(a.get(key), b.get(key))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static int extrasHashCode(Bundle bundle) {
+    if (bundle == null) {
+      return 0;
+    }
+    // Order independent, like Map.hashCode().
+    int hash = 0;
+    for (String key : bundle.keySet()) {
+      hash += key.hashCode() ^ valueHashCode(bundle.get(key));
+    }
+    return hash;
+  }
+
+  private static boolean valueEquals(Object a, Object b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null) {
+      return false;
+    }
+    if (a instanceof Bundle && b instanceof Bundle) {
+      return extrasEqual((Bundle) a, (Bundle) b);
+    }
+    if (a.getClass().isArray() && b.getClass().isArray()) {
+      return Arrays.deepEquals(new Object[]{a}, new Object[]{b});
+    }
+    return a.equals(b);
+  }
+
+  private static int valueHashCode(Object value) {
+    if (value instanceof Bundle) {
+      return extrasHashCode((Bundle) value);
+    }
+    if (value != null && value.getClass().isArray()) {
+      return Arrays.deepHashCode(new Object[]{value});
+    }
+    return hashCode(value);
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static int hashCode(Object value) {
+    return value == null ? 0 : value.hashCode();
+  }
+}
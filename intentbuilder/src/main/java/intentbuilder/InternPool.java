@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU pool of structurally distinct intents, backing {@link IntentBuilder#buildShared()}.
+ */
+final class InternPool {
+
+  static final int MAX_SIZE = 64;
+
+  private static final LinkedHashMap<Key, Intent> sPool =
+      new LinkedHashMap<Key, Intent>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Intent> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+
+  private InternPool() {
+  }
+
+  /**
+   * Returns the pooled intent equal to {@code intent}, pooling a copy of it if there is none, so
+   * the caller can keep modifying the instance it passed in.
+   */
+  static Intent internCopy(Intent intent) {
+    Key key = new Key(intent);
+    synchronized (sPool) {
+      Intent shared = sPool.get(key);
+      if (shared == null) {
+        shared = new Intent(intent);
+        sPool.put(new Key(shared, key), shared);
+      }
+      return shared;
+    }
+  }
+
+  static int size() {
+    synchronized (sPool) {
+      return sPool.size();
+    }
+  }
+
+  static void clear() {
+    synchronized (sPool) {
+      sPool.clear();
+    }
+  }
+
+  /**
+   * Holds the extras fetched once, since {@link Intent#getExtras()} copies the bundle.
+   */
+  private static final class Key {
+    private final Intent mIntent;
+    private final Bundle mExtras;
+    private final int mHash;
+
+    Key(Intent intent) {
+      mIntent = intent;
+      mExtras = intent.getExtras();
+      mHash = 31 * Intents.headerHashCode(intent) + Intents.extrasHashCode(mExtras);
+    }
+
+    /**
+     * Key for a copy of the intent of {@code original}. Its extras are already a snapshot.
+     */
+    Key(Intent copy, Key original) {
+      mIntent = copy;
+      mExtras = original.mExtras;
+      mHash = original.mHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return mHash == other.mHash
+          && Intents.sameHeader(mIntent, other.mIntent)
+          && Intents.extrasEqual(mExtras, other.mExtras);
+    }
+
+    @Override
+    public int hashCode() {
+      return mHash;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Flags, categories and extras recorded by a deferred {@link IntentBuilder}, replayed onto the
+ * {@link Intent} in a single pass by {@link #applyTo(Intent)}.
+ */
+final class OperationLog {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private int mFlags;
+  private final ArrayList<String> mCategories = new ArrayList<>(2);
+
+  private String[] mNames;
+  private ExtraType[] mTypes;
+  private long[] mBits;
+  private Object[] mValues;
+  private int mSize;
+
+  OperationLog() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  OperationLog(int capacity) {
+    mNames = new String[capacity];
+    mTypes = new ExtraType[capacity];
+    mBits = new long[capacity];
+    mValues = new Object[capacity];
+  }
+
+  void addFlags(int flags) {
+    mFlags |= flags;
+  }
+
+  void addCategory(String category) {
+    if (!mCategories.contains(category)) {
+      mCategories.add(category);
+    }
+  }
+
+  void addExtra(String name, ExtraType type, long bits, Object value) {
+    if (mSize == mNames.length) {
+      grow(mSize + (mSize >> 1) + 1);
+    }
+    mNames[mSize] = name;
+    mTypes[mSize] = type;
+    mBits[mSize] = bits;
+    mValues[mSize] = value;
+    mSize++;
+  }
+
+  void ensureCapacity(int capacity) {
+    if (capacity > mNames.length) {
+      grow(capacity);
+    }
+  }
+
+  int extrasSize() {
+    return mSize;
+  }
+
+  void estimateInto(SizeEstimator sizes) {
+    for (int i = 0; i < mSize; i++) {
+      sizes.add(mNames[i], mTypes[i], mBits[i], mValues[i]);
+    }
+  }
+
+  void applyTo(Intent intent) {
+    if (mFlags != 0) {
+      intent.addFlags(mFlags);
+    }
+    for (int i = 0, size = mCategories.size(); i < size; i++) {
+      intent.addCategory(mCategories.get(i));
+    }
+    // Straight into the intent's own extras: putExtras() and replaceExtras() would both copy a
+    // bundle built here once more.
+    for (int i = 0; i < mSize; i++) {
+      mTypes[i].put(intent, mNames[i], mBits[i], mValues[i]);
+    }
+  }
+
+  void clear() {
+    mFlags = 0;
+    mCategories.clear();
+    Arrays.fill(mNames, 0, mSize, null);
+    Arrays.fill(mTypes, 0, mSize, null);
+    Arrays.fill(mValues, 0, mSize, null);
+    mSize = 0;
+  }
+
+  private void grow(int capacity) {
+    String[] names = new String[capacity];
+    ExtraType[] types = new ExtraType[capacity];
+    long[] bits = new long[capacity];
+    Object[] values = new Object[capacity];
+    System.arraycopy(mNames, 0, names, 0, mSize);
+    System.arraycopy(mTypes, 0, types, 0, mSize);
+    System.arraycopy(mBits, 0, bits, 0, mSize);
+    System.arraycopy(mValues, 0, values, 0, mSize);
+    mNames = names;
+    mTypes = types;
+    mBits = bits;
+    mValues = values;
+  }
+}
@@ -31,86 +31,182 @@ import java.util.List;
 
 public class PreConditions {
 
+  static final ValidationPolicy POLICY =
+      ValidationPolicy.fromProperty(System.getProperty(ValidationPolicy.PROPERTY));
+
+  // False only when validation is off for the whole process, so the checks compile out.
+  static final boolean ENABLED = POLICY != ValidationPolicy.OFF;
+
   private PreConditions() {
   }
 
+  /**
+   * Whether the process-wide policy validates right now. {@link ValidationPolicy#DEBUG_ONLY} is
+   * decided at call time, since whether the app is debuggable is only known once a Context or
+   * {@link ValidationPolicy#setDebuggable(boolean)} tells.
+   */
+  static boolean enabled() {
+    return ENABLED && (POLICY != ValidationPolicy.DEBUG_ONLY || ValidationPolicy.isDebuggable());
+  }
+
   public static void validateContext(Context context) {
-    if (context == null) {
-      throw new IllegalStateException("Call IntentBuilder.context() first");
-    }
+    check(checkContext(context), null);
   }
 
   public static void validateNotEmpty(List param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.size(), message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(CharSequence[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(boolean[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(byte[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(char[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(double[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(float[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(int[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(long[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(short[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotEmpty(Parcelable[] param, String message) {
-    validateNotNull(param, message);
-    validateNotZero(param.length, message);
+    check(checkNotEmpty(param), message);
+  }
+
+  public static void validateNotEmpty(IntList param, String message) {
+    check(checkNotEmpty(param), message);
+  }
+
+  public static void validateNotEmpty(LongList param, String message) {
+    check(checkNotEmpty(param), message);
   }
 
   public static void validateNotNull(Object param, String message) {
-    if (param == null) {
-      throw new IllegalArgumentException(message + " must not be null");
-    }
+    check(checkNotNull(param), message);
   }
 
   public static void validateNotZero(int length, String message) {
-    if (length == 0) {
-      throw new IllegalArgumentException(message + " must not be 0 length");
-    }
+    check(checkNotZero(length), message);
+  }
+
+  public static void validatePositive(int value, String message) {
+    check(checkPositive(value), message);
   }
 
   public static void validateNotBlank(CharSequence param, String message) {
-    validateNotNull(param, message);
-    if (param.length() < 1) {
-      throw new IllegalArgumentException(message + " must not be empty");
+    check(checkNotBlank(param), message);
+  }
+
+  // //////////////////////
+  // Checks, returning the violation instead of throwing it
+  // //////////////////////
+
+  static void check(Violation violation, String message) {
+    if (violation != null) {
+      throw violation.exception(message);
+    }
+  }
+
+  static Violation checkSupported(ExtraType type) {
+    return type == null ? Violation.UNSUPPORTED_TYPE : null;
+  }
+
+  static Violation checkContext(Context context) {
+    return context == null ? Violation.NO_CONTEXT : null;
+  }
+
+  static Violation checkNotEmpty(List param) {
+    return param == null ? Violation.NULL : checkNotZero(param.size());
+  }
+
+  static Violation checkNotEmpty(CharSequence[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(boolean[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(byte[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(char[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(double[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(float[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(int[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(long[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(short[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(Parcelable[] param) {
+    return param == null ? Violation.NULL : checkNotZero(param.length);
+  }
+
+  static Violation checkNotEmpty(IntList param) {
+    return param == null ? Violation.NULL : checkNotZero(param.size());
+  }
+
+  static Violation checkNotEmpty(LongList param) {
+    return param == null ? Violation.NULL : checkNotZero(param.size());
+  }
+
+  static Violation checkNotNull(Object param) {
+    return param == null ? Violation.NULL : null;
+  }
+
+  static Violation checkNotZero(int length) {
+    return length == 0 ? Violation.ZERO_LENGTH : null;
+  }
+
+  static Violation checkPositive(int value) {
+    return value < 1 ? Violation.NOT_POSITIVE : null;
+  }
+
+  static Violation checkNotBlank(CharSequence param) {
+    if (param == null) {
+      return Violation.NULL;
     }
+    return param.length() < 1 ? Violation.EMPTY : null;
   }
 }
@@ -0,0 +1,245 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches {@link PackageManager#resolveActivity(Intent, int)} results, used by
+ * {@link IntentBuilder#buildResolved(PackageManager)}.
+ * <p>
+ * Entries are keyed on what intent filters match: action, data scheme, authority and path, type,
+ * categories, package and component, plus the resolve flags. Filters may match on path prefixes
+ * and patterns, so links to different paths of one host get separate entries.
+ * <p>
+ * Installed apps change, so {@link #register(Context)} the cache to drop every entry when a
+ * package is added, removed, changed or replaced; an unregistered cache keeps answering "no
+ * handler" after one is installed. The cache is bounded and evicts the least recently used
+ * entry.
+ */
+public class ResolutionCache {
+
+  public static final int DEFAULT_MAX_SIZE = 64;
+
+  private static final ResolutionCache sDefault = new ResolutionCache(DEFAULT_MAX_SIZE);
+
+  // Cached "nothing resolves", since LinkedHashMap.get() cannot tell it from a miss.
+  private static final Object NONE = new Object();
+
+  private final LinkedHashMap<Key, Object> mEntries;
+  private int mHits;
+  private int mMisses;
+  // Bumped by invalidate(), so a lookup that raced with it does not store a stale result.
+  private int mGeneration;
+  private BroadcastReceiver mReceiver;
+
+  public ResolutionCache(final int maxSize) {
+    PreConditions.validatePositive(maxSize, "Max size");
+    mEntries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * The process-wide cache used by {@link IntentBuilder#buildResolved(PackageManager)}. That
+   * method registers it with the application context of the builder's
+   * {@link IntentBuilder#context(Context) context}; without one, call {@link #register(Context)}
+   * yourself, e.g. from {@code Application.onCreate()}.
+   */
+  public static ResolutionCache getDefault() {
+    return sDefault;
+  }
+
+  /**
+   * Returns the activity {@code intent} resolves to, or null if there is none.
+   */
+  public ResolveInfo resolveActivity(PackageManager pm, Intent intent, int flags) {
+    PreConditions.validateNotNull(pm, "PackageManager");
+    PreConditions.validateNotNull(intent, "Intent");
+    Key key = new Key(intent, flags);
+    int generation;
+    synchronized (this) {
+      Object cached = mEntries.get(key);
+      if (cached != null) {
+        mHits++;
+        return cached == NONE ? null : (ResolveInfo) cached;
+      }
+      mMisses++;
+      generation = mGeneration;
+    }
+    // Outside the lock: this is a binder call.
+    ResolveInfo info = pm.resolveActivity(intent, flags);
+    synchronized (this) {
+      if (generation == mGeneration) {
+        mEntries.put(key, info == null ? NONE : info);
+      }
+    }
+    return info;
+  }
+
+  public synchronized void invalidate() {
+    mGeneration++;
+    mEntries.clear();
+  }
+
+  public synchronized int size() {
+    return mEntries.size();
+  }
+
+  public synchronized int hitCount() {
+    return mHits;
+  }
+
+  public synchronized int missCount() {
+    return mMisses;
+  }
+
+  public synchronized void resetStats() {
+    mHits = 0;
+    mMisses = 0;
+  }
+
+  // //////////////////////
+  // Invalidation
+  // //////////////////////
+
+  /**
+   * Invalidates the cache whenever a package is added, removed, changed or replaced. Pass the
+   * application context; the registration lives until {@link #unregister(Context)}.
+   */
+  public synchronized void register(Context context) {
+    PreConditions.validateNotNull(context, "Context");
+    if (mReceiver != null) {
+      return;
+    }
+    IntentFilter filter = new IntentFilter();
+    filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+    filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+    filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+    filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+    filter.addDataScheme("package");
+    mReceiver = new BroadcastReceiver() {
+      @Override
+      public void onReceive(Context context, Intent intent) {
+        invalidate();
+      }
+    };
+    context.registerReceiver(mReceiver, filter);
+  }
+
+  public synchronized void unregister(Context context) {
+    PreConditions.validateNotNull(context, "Context");
+    if (mReceiver != null) {
+      context.unregisterReceiver(mReceiver);
+      mReceiver = null;
+    }
+  }
+
+  private static final class Key {
+    private final String mAction;
+    private final String mScheme;
+    private final String mAuthority;
+    private final String mPath;
+    private final String mType;
+    private final Set<String> mCategories;
+    private final String mPackage;
+    private final ComponentName mComponent;
+    private final int mFlags;
+    private final int mHash;
+
+    Key(Intent intent, int flags) {
+      Uri data = intent.getData();
+      mAction = intent.getAction();
+      mScheme = data != null ? data.getScheme() : null;
+      mAuthority = data != null ? data.getEncodedAuthority() : null;
+      mPath = data != null ? data.getEncodedPath() : null;
+      mType = intent.getType();
+      // Copied: the intent's own set can still change while this key is in the map.
+      Set<String> categories = intent.getCategories();
+      mCategories = categories != null ? new HashSet<>(categories) : null;
+      mPackage = intent.getPackage();
+      mComponent = intent.getComponent();
+      mFlags = flags;
+      int hash = flags;
+      hash = 31 * hash + hashCode(mAction);
+      hash = 31 * hash + hashCode(mScheme);
+      hash = 31 * hash + hashCode(mAuthority);
+      hash = 31 * hash + hashCode(mPath);
+      hash = 31 * hash + hashCode(mType);
+      hash = 31 * hash + hashCode(mCategories);
+      hash = 31 * hash + hashCode(mPackage);
+      mHash = 31 * hash + hashCode(mComponent);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return mHash == other.mHash
+          && mFlags == other.mFlags
+          && equal(mAction, other.mAction)
+          && equal(mScheme, other.mScheme)
+          && equal(mAuthority, other.mAuthority)
+          && equal(mPath, other.mPath)
+          && equal(mType, other.mType)
+          && equal(mCategories, other.mCategories)
+          && equal(mPackage, other.mPackage)
+          && equal(mComponent, other.mComponent);
+    }
+
+    @Override
+    public int hashCode() {
+      return mHash;
+    }
+
+    private static boolean equal(Object a, Object b) {
+      return a == null ? b == null : a.equals(b);
+    }
+
+    private static int hashCode(Object value) {
+      return value == null ? 0 : value.hashCode();
+    }
+  }
+}
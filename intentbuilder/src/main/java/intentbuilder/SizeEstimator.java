@@ -0,0 +1,267 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running estimate of the marshalled size of the extras written by an {@link IntentBuilder},
+ * following the layout {@code Bundle.writeToParcel} produces. Each extra is sized once, when it
+ * is added. Primitives, strings and arrays are computed arithmetically; Parcelable values and
+ * nested bundles are marshalled on their own into a scratch {@link Parcel}.
+ */
+final class SizeEstimator {
+
+  private static final String TAG = "IntentBuilder";
+
+  // Bundle length, magic and entry count.
+  static final int BUNDLE_HEADER = 12;
+
+  private final LinkedHashMap<String, Integer> mSizes = new LinkedHashMap<>();
+  private int mTotal = BUNDLE_HEADER;
+  private int mBudget = Integer.MAX_VALUE;
+  private boolean mFailFast;
+  private boolean mWarned;
+
+  void budget(int maxBytes, boolean failFast) {
+    mBudget = maxBytes;
+    mFailFast = failFast;
+    mWarned = false;
+    check(null, mTotal);
+  }
+
+  void add(String name, ExtraType type, long bits, Object value) {
+    if (type == ExtraType.ALL) {
+      addAll((Bundle) value);
+      return;
+    }
+    put(name, string(name) + sizeOf(type, bits, value));
+  }
+
+  void addAll(Bundle bundle) {
+    if (bundle == null) {
+      return;
+    }
+    LinkedHashMap<String, Integer> sizes = new LinkedHashMap<>();
+    for (String name : bundle.keySet()) {
+      sizes.put(name, string(name) + value(bundle.get(name)));
+    }
+    addSizes(sizes);
+  }
+
+  /**
+   * Adds all of {@code sizes} or, when they do not fit a fail-fast budget, none of them.
+   */
+  void addSizes(Map<String, Integer> sizes) {
+    int total = mTotal;
+    for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+      Integer previous = mSizes.get(entry.getKey());
+      total += entry.getValue() - (previous != null ? previous : 0);
+    }
+    check(null, total);
+    mSizes.putAll(sizes);
+    mTotal = total;
+  }
+
+  void clear() {
+    mSizes.clear();
+    mTotal = BUNDLE_HEADER;
+    mWarned = false;
+  }
+
+  int total() {
+    return mTotal;
+  }
+
+  Map<String, Integer> sizes() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(mSizes));
+  }
+
+  /**
+   * Checks the budget before recording the size, so an extra rejected in fail-fast mode is not
+   * counted: the builder does not write it either.
+   */
+  private void put(String name, int size) {
+    Integer previous = mSizes.get(name);
+    int total = mTotal + size - (previous != null ? previous : 0);
+    check(name, total);
+    mSizes.put(name, size);
+    mTotal = total;
+  }
+
+  private void check(String name, int total) {
+    if (total <= mBudget) {
+      return;
+    }
+    String message = "Intent extras need ~" + total + " bytes, over the budget of " + mBudget
+        + (name != null ? " after adding '" + name + "'" : "");
+    if (mFailFast) {
+      throw new IllegalStateException(message);
+    }
+    if (!mWarned) {
+      mWarned = true;
+      Log.w(TAG, message);
+    }
+  }
+
+  // //////////////////////
+  // Parcel layout
+  // //////////////////////
+
+  static int sizeOf(ExtraType type, long bits, Object value) {
+    switch (type) {
+      case BOOLEAN:
+      case BYTE:
+      case INT:
+      case FLOAT:
+      case SHORT:
+        return 8;
+      case DOUBLE:
+      case LONG:
+        return 12;
+      case CHAR:
+        return value(Character.valueOf((char) bits));
+      default:
+        return value(value);
+    }
+  }
+
+  /**
+   * Size of {@code value} as written by {@code Parcel.writeValue}, type tag included. The checks
+   * run in the same order as there: char, short, float and double arrays and {@link Character}
+   * have no dedicated tag and are written as {@link Serializable}.
+   */
+  static int value(Object value) {
+    if (value == null) {
+      return 4;
+    } else if (value instanceof String) {
+      return 4 + string((String) value);
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Float
+        || value instanceof Boolean) {
+      return 8;
+    } else if (value instanceof Long || value instanceof Double) {
+      return 12;
+    } else if (value instanceof Map || value instanceof Bundle || value instanceof Parcelable) {
+      return marshalled(value);
+    } else if (value instanceof CharSequence) {
+      return 4 + charSequence((CharSequence) value);
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      int size = 8;
+      for (int i = 0, count = list.size(); i < count; i++) {
+        size += value(list.get(i));
+      }
+      return size;
+    } else if (value instanceof boolean[]) {
+      return 8 + 4 * ((boolean[]) value).length;
+    } else if (value instanceof byte[]) {
+      return 8 + pad(((byte[]) value).length);
+    } else if (value instanceof String[]) {
+      int size = 8;
+      for (String item : (String[]) value) {
+        size += string(item);
+      }
+      return size;
+    } else if (value instanceof CharSequence[]) {
+      int size = 8;
+      for (CharSequence item : (CharSequence[]) value) {
+        size += charSequence(item);
+      }
+      return size;
+    } else if (value instanceof Object[]) {
+      return marshalled(value);
+    } else if (value instanceof int[]) {
+      return 8 + 4 * ((int[]) value).length;
+    } else if (value instanceof long[]) {
+      return 8 + 8 * ((long[]) value).length;
+    } else if (value instanceof Byte) {
+      return 8;
+    } else if (value instanceof Serializable) {
+      return 4 + string(value.getClass().getName()) + 4 + pad(serialized(value));
+    }
+    return marshalled(value);
+  }
+
+  static int string(String value) {
+    return value == null ? 4 : 4 + pad((value.length() + 1) * 2);
+  }
+
+  static int pad(int length) {
+    return (length + 3) & ~3;
+  }
+
+  private static int charSequence(CharSequence value) {
+    // TextUtils.writeToParcel: kind, the text, then span records for Spanned text.
+    return value == null ? 4 : 4 + string(value.toString());
+  }
+
+  private static int marshalled(Object value) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.writeValue(value);
+      return parcel.dataSize();
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  private static int serialized(Object value) {
+    CountingOutputStream out = new CountingOutputStream();
+    try {
+      ObjectOutputStream stream = new ObjectOutputStream(out);
+      stream.writeObject(value);
+      stream.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to serialize " + value.getClass().getName(), e);
+    }
+    return out.mCount;
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+    int mCount;
+
+    @Override
+    public void write(int b) {
+      mCount++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      mCount += len;
+    }
+  }
+}
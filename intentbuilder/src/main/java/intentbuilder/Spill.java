@@ -0,0 +1,299 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/**
+ * Moves large {@code byte[]}, Serializable and Parcelable extras out of the binder transaction.
+ * Payloads above the threshold are written to a memory-mapped file and the intent only carries a
+ * {@link SpillHandle}; an {@link IntentReader} given the same directory maps them back.
+ * <p>
+ * Handles arrive with an intent, so they are not trusted: a handle is only resolved to a file
+ * named by {@link #write} directly inside this directory, and anything else is rejected before
+ * the file is opened or deleted.
+ * <p>
+ * Files are not deleted when read, since an intent can be delivered again (e.g. when an Activity
+ * is recreated). Call {@link #release(SpillHandle)} once a payload is no longer needed, and
+ * {@link #purge(long)} at startup to remove files orphaned by a crash or an intent that was never
+ * delivered.
+ */
+public class Spill {
+
+  static final String DIRECTORY = "intentbuilder-spill";
+  private static final String PREFIX = "spill-";
+  private static final String SUFFIX = ".bin";
+  // Prefix, a 36 character UUID and the suffix.
+  private static final int NAME_LENGTH = PREFIX.length() + 36 + SUFFIX.length();
+
+  private final File mDirectory;
+  private final int mThreshold;
+
+  public Spill(File directory, int thresholdBytes) {
+    PreConditions.validateNotNull(directory, "Directory");
+    PreConditions.validatePositive(thresholdBytes, "Threshold");
+    mDirectory = directory;
+    mThreshold = thresholdBytes;
+  }
+
+  public static Spill inCache(Context context, int thresholdBytes) {
+    PreConditions.validateNotNull(context, "Context");
+    return new Spill(new File(context.getCacheDir(), DIRECTORY), thresholdBytes);
+  }
+
+  public int threshold() {
+    return mThreshold;
+  }
+
+  // //////////////////////
+  // Writing
+  // //////////////////////
+
+  /**
+   * Returns a handle for {@code value}, or {@code null} if it is under the threshold.
+   */
+  SpillHandle spill(byte[] value) {
+    return value.length > mThreshold ? write(value, SpillHandle.KIND_BYTES) : null;
+  }
+
+  SpillHandle spill(Serializable value) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(value);
+      out.close();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to serialize " + value.getClass().getName(), e);
+    }
+    return bytes.size() > mThreshold
+        ? write(bytes.toByteArray(), SpillHandle.KIND_SERIALIZABLE) : null;
+  }
+
+  SpillHandle spill(Parcelable value) {
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.writeParcelable(value, 0);
+      return parcel.dataSize() > mThreshold
+          ? write(parcel.marshall(), SpillHandle.KIND_PARCELABLE) : null;
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  SpillHandle write(byte[] data, int kind) {
+    if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + mDirectory);
+    }
+    File file = new File(mDirectory, PREFIX + UUID.randomUUID() + SUFFIX);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+            data.length);
+        buffer.put(data);
+        buffer.force();
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      file.delete();
+      throw new IllegalStateException("Unable to spill to " + file, e);
+    }
+    return new SpillHandle(file.getName(), data.length, kind);
+  }
+
+  // //////////////////////
+  // Reading
+  // //////////////////////
+
+  /**
+   * Maps the payload read-only, without copying it.
+   */
+  public ByteBuffer map(SpillHandle handle) throws IOException {
+    PreConditions.validateNotNull(handle, "SpillHandle");
+    File file = resolve(handle);
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      if (handle.mLength < 0 || handle.mLength > raf.length()) {
+        throw new IOException("Invalid length " + handle.mLength + " for " + handle.mId);
+      }
+      return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, handle.mLength);
+    } finally {
+      raf.close();
+    }
+  }
+
+  public Serializable readSerializable(SpillHandle handle) throws IOException {
+    validateKind(handle, SpillHandle.KIND_SERIALIZABLE);
+    ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(map(handle)));
+    try {
+      return (Serializable) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e.getMessage());
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Parcel can only unmarshall from an array, so unlike the other payloads this one is copied
+   * once out of the mapping.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Parcelable> T readParcelable(SpillHandle handle, ClassLoader loader)
+      throws IOException {
+    validateKind(handle, SpillHandle.KIND_PARCELABLE);
+    ByteBuffer mapped = map(handle);
+    byte[] data = new byte[mapped.remaining()];
+    mapped.get(data);
+    Parcel parcel = Parcel.obtain();
+    try {
+      parcel.unmarshall(data, 0, data.length);
+      parcel.setDataPosition(0);
+      return (T) parcel.readParcelable(loader);
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  // //////////////////////
+  // Cleanup
+  // //////////////////////
+
+  /**
+   * Deletes the file of {@code handle}. Returns false if it was already gone or if the handle
+   * does not name a file of this spill directory.
+   */
+  public boolean release(SpillHandle handle) {
+    PreConditions.validateNotNull(handle, "SpillHandle");
+    try {
+      return resolve(handle).delete();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Deletes spill files last modified more than {@code maxAgeMillis} ago. Returns how many were
+   * deleted.
+   */
+  public int purge(long maxAgeMillis) {
+    File[] files = mDirectory.listFiles();
+    if (files == null) {
+      return 0;
+    }
+    long cutoff = System.currentTimeMillis() - maxAgeMillis;
+    int deleted = 0;
+    for (File file : files) {
+      if (file.getName().startsWith(PREFIX) && file.lastModified() < cutoff && file.delete()) {
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * Resolves the id of {@code handle} to a file directly inside this directory, as named by
+   * {@link #write}. Separators, {@code ..} and absolute paths never get that far: the id must be
+   * the prefix followed by a UUID, and the canonical parent must be the canonical directory.
+   */
+  File resolve(SpillHandle handle) throws IOException {
+    String id = handle.mId;
+    if (!isSpillName(id)) {
+      throw new IOException("Not a spill file id: " + id);
+    }
+    File file = new File(mDirectory, id);
+    File parent = file.getCanonicalFile().getParentFile();
+    if (parent == null || !parent.equals(mDirectory.getCanonicalFile())) {
+      throw new IOException("Not a spill file id: " + id);
+    }
+    return file;
+  }
+
+  private static boolean isSpillName(String id) {
+    if (id == null || id.length() != NAME_LENGTH || !id.startsWith(PREFIX)
+        || !id.endsWith(SUFFIX)) {
+      return false;
+    }
+    for (int i = PREFIX.length(), end = id.length() - SUFFIX.length(); i < end; i++) {
+      char c = id.charAt(i);
+      if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c == '-')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void validateKind(SpillHandle handle, int kind) {
+    PreConditions.validateNotNull(handle, "SpillHandle");
+    if (handle.mKind != kind) {
+      throw new IllegalArgumentException("SpillHandle holds kind " + handle.mKind
+          + ", not " + kind);
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer mBuffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      mBuffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!mBuffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, mBuffer.remaining());
+      mBuffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return mBuffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Small extra that stands in for a payload spilled to a file by {@link Spill}. It only carries an
+ * opaque file id, which {@link Spill} resolves inside its own directory, so a handle forged by
+ * another app cannot point anywhere else.
+ */
+public final class SpillHandle implements Parcelable {
+
+  public static final int KIND_BYTES = 0;
+  public static final int KIND_SERIALIZABLE = 1;
+  public static final int KIND_PARCELABLE = 2;
+
+  final String mId;
+  final int mLength;
+  final int mKind;
+
+  SpillHandle(String id, int length, int kind) {
+    mId = id;
+    mLength = length;
+    mKind = kind;
+  }
+
+  public String id() {
+    return mId;
+  }
+
+  public int length() {
+    return mLength;
+  }
+
+  public int kind() {
+    return mKind;
+  }
+
+  @Override
+  public int describeContents() {
+    return 0;
+  }
+
+  @Override
+  public void writeToParcel(Parcel dest, int flags) {
+    dest.writeString(mId);
+    dest.writeInt(mLength);
+    dest.writeInt(mKind);
+  }
+
+  public static final Creator<SpillHandle> CREATOR = new Creator<SpillHandle>() {
+    @Override
+    public SpillHandle createFromParcel(Parcel in) {
+      return new SpillHandle(in.readString(), in.readInt(), in.readInt());
+    }
+
+    @Override
+    public SpillHandle[] newArray(int size) {
+      return new SpillHandle[size];
+    }
+  };
+}
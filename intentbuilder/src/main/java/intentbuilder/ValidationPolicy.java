@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+/**
+ * Controls whether {@link IntentBuilder} runs its {@link PreConditions} checks.
+ * <p>
+ * The process-wide policy is read once from the {@code intentbuilder.validation} system property
+ * ({@code strict}, {@code debug_only} or {@code off}; {@code strict} when unset or unknown) into a
+ * static final field, so the JIT drops checks turned off entirely. Release builds can do the same
+ * at shrink time with:
+ * <pre>
+ * -assumevalues class intentbuilder.PreConditions {
+ *   static boolean ENABLED return false;
+ * }
+ * </pre>
+ * A builder can relax the process-wide policy with {@link IntentBuilder#validation}, but never
+ * re-enable checks that were turned off globally.
+ */
+public enum ValidationPolicy {
+
+  /** Always validate. */
+  STRICT,
+
+  /**
+   * Validate only in debuggable apps. The app counts as debuggable once
+   * {@link #setDebuggable(boolean)} says so, e.g. with {@code BuildConfig.DEBUG}, or else once a
+   * Context given to {@link IntentBuilder#context(Context)} or {@link ComponentCache#init(Context)}
+   * has {@link ApplicationInfo#FLAG_DEBUGGABLE} set. Until then it is debuggable only when
+   * assertions are enabled for the library, which is never the case on a device.
+   */
+  DEBUG_ONLY,
+
+  /** Never validate. */
+  OFF;
+
+  static final String PROPERTY = "intentbuilder.validation";
+
+  private static final String TAG = "IntentBuilder";
+
+  // Null until set or detected from a Context.
+  private static volatile Boolean sDebuggable;
+
+  /**
+   * Tells {@link #DEBUG_ONLY} whether this is a debug build, overriding what is detected from
+   * {@link ApplicationInfo#FLAG_DEBUGGABLE}.
+   */
+  public static void setDebuggable(boolean debuggable) {
+    sDebuggable = debuggable;
+  }
+
+  static boolean isDebuggable() {
+    Boolean debuggable = sDebuggable;
+    return debuggable != null ? debuggable : PreConditions.class.desiredAssertionStatus();
+  }
+
+  static void detectDebuggable(Context context) {
+    if (sDebuggable != null || context == null) {
+      return;
+    }
+    ApplicationInfo info = context.getApplicationInfo();
+    if (info != null) {
+      sDebuggable = (info.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+  }
+
+  static void resetDebuggable() {
+    sDebuggable = null;
+  }
+
+  boolean isEnabled() {
+    switch (this) {
+      case STRICT:
+        return true;
+      case DEBUG_ONLY:
+        return isDebuggable();
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Parses the system property. Runs from a static initializer, so an unknown value falls back to
+   * {@link #STRICT} with a warning instead of throwing.
+   */
+  static ValidationPolicy fromProperty(String value) {
+    if (value == null) {
+      return STRICT;
+    }
+    ValidationPolicy policy = parse(value);
+    if (policy == null) {
+      Log.w(TAG, "Unknown " + PROPERTY + " value '" + value + "', using strict");
+      return STRICT;
+    }
+    return policy;
+  }
+
+  /** Returns the policy named by {@code value} ignoring case, or null if there is none. */
+  static ValidationPolicy parse(String value) {
+    for (ValidationPolicy policy : values()) {
+      if (policy.name().equalsIgnoreCase(value)) {
+        return policy;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validation failures collected by an {@link IntentBuilder} set up with
+ * {@link IntentBuilder#validateInto(ValidationResult)}, in the order they happened. Only the kind
+ * of failure and the name of the offending argument are stored: messages are formatted on
+ * demand. Call {@link #clear()} to reuse an instance for the next intent.
+ */
+public final class ValidationResult {
+
+  private static final int INITIAL_CAPACITY = 4;
+
+  private Violation[] mViolations = new Violation[INITIAL_CAPACITY];
+  private String[] mSubjects = new String[INITIAL_CAPACITY];
+  private int mSize;
+
+  public boolean isValid() {
+    return mSize == 0;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public String getMessage(int index) {
+    if (index < 0 || index >= mSize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+    }
+    return mViolations[index].format(mSubjects[index]);
+  }
+
+  public List<String> getMessages() {
+    List<String> messages = new ArrayList<>(mSize);
+    for (int i = 0; i < mSize; i++) {
+      messages.add(mViolations[i].format(mSubjects[i]));
+    }
+    return messages;
+  }
+
+  public void clear() {
+    for (int i = 0; i < mSize; i++) {
+      mViolations[i] = null;
+      mSubjects[i] = null;
+    }
+    mSize = 0;
+  }
+
+  void addAll(ValidationResult other) {
+    for (int i = 0; i < other.mSize; i++) {
+      add(other.mViolations[i], other.mSubjects[i]);
+    }
+  }
+
+  void add(Violation violation, String subject) {
+    if (mSize == mViolations.length) {
+      Violation[] violations = new Violation[mSize * 2];
+      System.arraycopy(mViolations, 0, violations, 0, mSize);
+      mViolations = violations;
+      String[] subjects = new String[mSize * 2];
+      System.arraycopy(mSubjects, 0, subjects, 0, mSize);
+      mSubjects = subjects;
+    }
+    mViolations[mSize] = violation;
+    mSubjects[mSize] = subject;
+    mSize++;
+  }
+
+  @Override
+  public String toString() {
+    return "ValidationResult" + getMessages();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+/**
+ * A failed {@link PreConditions} check. Messages are only formatted when asked for, and the
+ * exceptions skip filling in their stack trace unless the app is debuggable, so rejecting bad
+ * input in bulk costs one small allocation per failure.
+ */
+enum Violation {
+
+  NULL(" must not be null"),
+  ZERO_LENGTH(" must not be 0 length"),
+  NOT_POSITIVE(" must be greater than 0"),
+  EMPTY(" must not be empty"),
+  UNSUPPORTED_TYPE(null) {
+    @Override
+    String format(String subject) {
+      return "Unsupported extra type " + subject;
+    }
+  },
+  NO_CONTEXT(null) {
+    @Override
+    String format(String subject) {
+      return "Call IntentBuilder.context() first";
+    }
+
+    @Override
+    RuntimeException exception(String subject) {
+      return new InvalidState(this, subject);
+    }
+  };
+
+  /** Stack traces are only filled in for debuggable apps, see {@link ValidationPolicy}. */
+  static boolean stackTraces() {
+    return ValidationPolicy.isDebuggable();
+  }
+
+  private final String mSuffix;
+
+  Violation(String suffix) {
+    mSuffix = suffix;
+  }
+
+  String format(String subject) {
+    return subject + mSuffix;
+  }
+
+  RuntimeException exception(String subject) {
+    return new InvalidArgument(this, subject);
+  }
+
+  static final class InvalidArgument extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Violation mViolation;
+    private final String mSubject;
+
+    InvalidArgument(Violation violation, String subject) {
+      mViolation = violation;
+      mSubject = subject;
+    }
+
+    @Override
+    public String getMessage() {
+      return mViolation.format(mSubject);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return stackTraces() ? super.fillInStackTrace() : this;
+    }
+  }
+
+  static final class InvalidState extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Violation mViolation;
+    private final String mSubject;
+
+    InvalidState(Violation violation, String subject) {
+      mViolation = violation;
+      mSubject = subject;
+    }
+
+    @Override
+    public String getMessage() {
+      return mViolation.format(mSubject);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return stackTraces() ? super.fillInStackTrace() : this;
+    }
+  }
+}
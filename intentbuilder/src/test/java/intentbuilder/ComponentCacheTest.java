@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.app.Activity;
+import android.app.Service;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ComponentCacheTest {
+
+  @After
+  public void tearDown() {
+    ComponentCache.reset();
+  }
+
+  @Test
+  public void byName() {
+    ComponentName component = ComponentCache.get("my.package", "my.package.MyClass");
+    assertEquals(new ComponentName("my.package", "my.package.MyClass"), component);
+    assertSame(component, ComponentCache.get("my.package", "my.package.MyClass"));
+  }
+
+  @Test
+  public void byClass() {
+    ComponentName component = ComponentCache.get("my.package", Activity.class);
+    assertEquals(new ComponentName("my.package", Activity.class.getName()), component);
+    assertSame(component, ComponentCache.get("my.package", Activity.class));
+    assertSame(component, ComponentCache.get("my.package", Activity.class.getName()));
+  }
+
+  @Test
+  public void byClassOtherPackage() {
+    ComponentName first = ComponentCache.get("my.package", Activity.class);
+    ComponentName second = ComponentCache.get("other.package", Activity.class);
+    assertNotSame(first, second);
+    assertEquals("other.package", second.getPackageName());
+  }
+
+  @Test
+  public void byNameBounded() {
+    ComponentName last = null;
+    for (int i = 0; i <= ComponentCache.MAX_NAMES; i++) {
+      last = ComponentCache.get("my.package", "my.package.Class" + i);
+    }
+    assertEquals(ComponentCache.MAX_NAMES, ComponentCache.namesSize());
+    String newest = "my.package.Class" + ComponentCache.MAX_NAMES;
+    assertSame(last, ComponentCache.get("my.package", newest));
+  }
+
+  @Test
+  public void byClassNotEvictedByNames() {
+    ComponentName component = ComponentCache.get("my.package", Activity.class);
+    for (int i = 0; i <= ComponentCache.MAX_NAMES; i++) {
+      ComponentCache.get("my.package", "my.package.Class" + i);
+    }
+    assertSame(component, ComponentCache.get("my.package", Activity.class));
+  }
+
+  @Test
+  public void byNameOtherPackage() {
+    ComponentName first = ComponentCache.get("my.package", "my.package.MyClass");
+    ComponentName second = ComponentCache.get("other.package", "my.package.MyClass");
+    assertEquals("other.package", second.getPackageName());
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void builderValidationOff() {
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validation(ValidationPolicy.OFF).className(" ", "my.package.MyClass");
+    verify(mock, times(1)).setComponent(new ComponentName(" ", "my.package.MyClass"));
+  }
+
+  @Test
+  public void builderCollecting() {
+    ValidationResult result = new ValidationResult();
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validateInto(result)
+        .className("", "my.package.MyClass")
+        .activity(Activity.class);
+    assertEquals(2, result.size());
+    verify(mock, never()).setComponent(any(ComponentName.class));
+  }
+
+  @Test
+  public void init() {
+    ComponentCache.init(context("my.package"));
+    assertEquals("my.package", ComponentCache.get(Service.class).getPackageName());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void notInitialized() {
+    ComponentCache.get(Service.class);
+  }
+
+  @Test
+  public void builderWithoutContext() {
+    ComponentCache.init(context("my.package"));
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).service(Service.class);
+    verify(mock, times(1)).setComponent(ComponentCache.get("my.package", Service.class));
+  }
+
+  @Test
+  public void contextWins() {
+    ComponentCache.init(context("my.package"));
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).context(context("other.package")).activity(Activity.class);
+    verify(mock, times(1)).setComponent(new ComponentName("other.package",
+        Activity.class.getName()));
+  }
+
+  private static Context context(String packageName) {
+    Context context = mock(Context.class);
+    when(context.getPackageName()).thenReturn(packageName);
+    return context;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class DeepLinkRouterTest {
+
+  private IntentTemplate mItem;
+  private IntentTemplate mNewItem;
+  private IntentTemplate mEdit;
+  private DeepLinkRouter mRouter;
+
+  @Before
+  public void setUp() {
+    mItem = new IntentBuilder(mock(Intent.class)).freeze();
+    mNewItem = new IntentBuilder(mock(Intent.class)).freeze();
+    mEdit = new IntentBuilder(mock(Intent.class)).freeze();
+    mRouter = new DeepLinkRouter()
+        .register("https://example.com/items/{id}?ref={referrer}", mItem)
+        .register("https://example.com/items/new", mNewItem)
+        .register("https://example.com/items/{id}/edit", mEdit);
+  }
+
+  @Test
+  public void placeholder() {
+    DeepLinkRouter.Match match = mRouter.match("https://example.com/items/42");
+    assertSame(mItem, match.template());
+    assertEquals("42", match.params().get("id"));
+    assertEquals(1, match.params().size());
+  }
+
+  @Test
+  public void query() {
+    DeepLinkRouter.Match match =
+        mRouter.match("https://example.com/items/42?utm=x&ref=mail+box#top");
+    assertEquals("42", match.params().get("id"));
+    assertEquals("mail box", match.params().get("referrer"));
+  }
+
+  @Test
+  public void literalBeatsPlaceholder() {
+    assertSame(mNewItem, mRouter.match("https://example.com/items/new").template());
+  }
+
+  @Test
+  public void backtracks() {
+    DeepLinkRouter.Match match = mRouter.match("https://example.com/items/new/edit");
+    assertSame(mEdit, match.template());
+    assertEquals("new", match.params().get("id"));
+  }
+
+  @Test
+  public void decodesSegments() {
+    DeepLinkRouter.Match match = mRouter.match("https://example.com/items/a%20b+c");
+    assertEquals("a b+c", match.params().get("id"));
+  }
+
+  @Test
+  public void caseInsensitiveHostAndPort() {
+    assertNotNull(mRouter.match("HTTPS://user@Example.com:443/items/42/"));
+  }
+
+  @Test
+  public void noMatch() {
+    assertNull(mRouter.match("https://example.com/items"));
+    assertNull(mRouter.match("https://example.com/items/42/delete"));
+    assertNull(mRouter.match("https://other.com/items/42"));
+    assertNull(mRouter.match("not a uri"));
+    assertNull(mRouter.route("https://example.com/"));
+  }
+
+  @Test
+  public void manyRoutes() {
+    DeepLinkRouter router = new DeepLinkRouter();
+    for (int i = 0; i < 1000; i++) {
+      router.register("app://host/section" + i + "/{id}", mItem);
+    }
+    assertEquals(1000, router.size());
+    assertEquals("7", router.match("app://host/section999/7").params().get("id"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void conflict() {
+    mRouter.register("https://example.com/items/{other}", mItem);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void duplicatePlaceholder() {
+    mRouter.register("https://example.com/{id}/{id}", mItem);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void literalQueryValue() {
+    mRouter.register("https://example.com/search?q=fixed", mItem);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notHierarchical() {
+    mRouter.register("mailto:someone", mItem);
+  }
+
+  @Test
+  public void builder() {
+    IntentBuilder builder = mRouter.route("https://example.com/items/42");
+    assertNotNull(builder);
+    assertTrue(builder.build() != null);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntListTest {
+
+  @Test
+  public void addGrows() {
+    IntList list = new IntList();
+    assertTrue(list.isEmpty());
+    for (int i = 0; i < 100; i++) {
+      list.add(i);
+    }
+    assertEquals(100, list.size());
+    assertEquals(42, list.get(42));
+    assertEquals(100, list.toArray().length);
+  }
+
+  @Test
+  public void addAll() {
+    IntList list = new IntList(1);
+    list.add(1);
+    list.addAll(new int[]{2, 3});
+    assertArrayEquals(new int[]{1, 2, 3}, list.toArray());
+  }
+
+  @Test
+  public void wrapSharesArray() {
+    int[] values = {1, 2};
+    IntList list = IntList.wrap(values);
+    list.set(1, 5);
+    assertEquals(5, values[1]);
+    list.add(3);
+    list.set(0, 7);
+    assertEquals(1, values[0]);
+  }
+
+  @Test
+  public void clear() {
+    IntList list = IntList.wrap(new int[]{1, 2});
+    list.clear();
+    assertEquals(0, list.size());
+    assertEquals(0, list.toArray().length);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getOutOfBounds() {
+    IntList list = new IntList(4);
+    list.add(1);
+    list.get(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacityZero() {
+    new IntList(0);
+  }
+
+  @Test
+  public void equalsIgnoresCapacity() {
+    IntList list = new IntList(16);
+    list.add(1);
+    list.add(2);
+    assertEquals(IntList.wrap(new int[]{1, 2}), list);
+    assertEquals(IntList.wrap(new int[]{1, 2}).hashCode(), list.hashCode());
+    assertNotEquals(IntList.wrap(new int[]{2, 1}), list);
+    assertEquals("[1, 2]", list.toString());
+  }
+}
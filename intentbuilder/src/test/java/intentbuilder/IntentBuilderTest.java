@@ -31,6 +31,7 @@ import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -38,15 +39,40 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import java.io.File;
 import java.io.Serializable;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 public class IntentBuilderTest {
 
@@ -66,6 +92,81 @@ public class IntentBuilderTest {
     assertNotNull(intent);
   }
 
+  // //////////////////////
+  // Pool
+  // //////////////////////
+
+  @Test
+  public void obtainReusesRecycled() {
+    IntentBuilder builder = IntentBuilder.obtain();
+    builder.build();
+    builder.recycle();
+    assertSame(builder, IntentBuilder.obtain());
+  }
+
+  @Test
+  public void obtainSteadyStateAllocatesNoBuilders() {
+    IntentBuilder first = IntentBuilder.obtain();
+    first.build();
+    first.recycle();
+    for (int i = 0; i < 1000; i++) {
+      IntentBuilder builder = IntentBuilder.obtain();
+      assertSame(first, builder);
+      builder.build();
+      builder.recycle();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void recycleTwice() {
+    IntentBuilder builder = IntentBuilder.obtain();
+    builder.build();
+    builder.recycle();
+    builder.recycle();
+  }
+
+  @Test
+  public void recycleRestoresDefaults() throws Exception {
+    ValidationResult result = new ValidationResult();
+    IntentBuilder builder = IntentBuilder.obtain()
+        .deferred()
+        .sizeBudget(64, true)
+        .spill(new Spill(new File(System.getProperty("java.io.tmpdir")), 16))
+        .validateInto(result)
+        .validation(ValidationPolicy.OFF);
+    builder.extra("", 1);
+    builder.recycle();
+
+    IntentBuilder obtained = IntentBuilder.obtain();
+    assertSame(builder, obtained);
+    Field log = IntentBuilder.class.getDeclaredField("mLog");
+    log.setAccessible(true);
+    assertNull(log.get(obtained));
+    byte[] large = new byte[128];
+    Intent intent = obtained.extra("large", large).build();
+    assertSame(large, intent.getByteArrayExtra("large"));
+    assertEquals(new IntentBuilder().extra("large", large).estimatedSizeBytes(),
+        obtained.estimatedSizeBytes());
+    try {
+      obtained.extra("", 1);
+      throw new AssertionError("Expected validation to be back on");
+    } catch (IllegalArgumentException expected) {
+      assertTrue(result.isValid());
+    }
+    obtained.recycle();
+  }
+
+  @Test
+  public void resetKeepsBuiltIntent() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock);
+    Intent intent = builder.build();
+    Intent next = builder.reset().build();
+    assertSame(mock, intent);
+    assertNotSame(intent, next);
+    verifyZeroInteractions(mock);
+  }
+
   // //////////////////////
   // Builder methods
   // //////////////////////
@@ -108,8 +209,9 @@ public class IntentBuilderTest {
   public void service() {
     Intent mock = mock(Intent.class);
     Context context = mock(Context.class);
+    when(context.getPackageName()).thenReturn("my.package");
     new IntentBuilder(mock).context(context).service(Service.class);
-    verify(mock, times(1)).setClass(context, Service.class);
+    verify(mock, times(1)).setComponent(new ComponentName("my.package", Service.class.getName()));
   }
 
   @Test(expected = IllegalStateException.class)
@@ -127,8 +229,9 @@ public class IntentBuilderTest {
   public void activity() {
     Intent mock = mock(Intent.class);
     Context context = mock(Context.class);
+    when(context.getPackageName()).thenReturn("my.package");
     new IntentBuilder(mock).context(context).activity(Activity.class);
-    verify(mock, times(1)).setClass(context, Activity.class);
+    verify(mock, times(1)).setComponent(new ComponentName("my.package", Activity.class.getName()));
   }
 
 
@@ -147,8 +250,9 @@ public class IntentBuilderTest {
   public void receiver() {
     Intent mock = mock(Intent.class);
     Context context = mock(Context.class);
+    when(context.getPackageName()).thenReturn("my.package");
     new IntentBuilder(mock).context(context).receiver(BroadcastReceiver.class);
-    verify(mock, times(1)).setClass(context, BroadcastReceiver.class);
+    verify(mock, times(1)).setComponent(new ComponentName("my.package", BroadcastReceiver.class.getName()));
   }
 
   @Test(expected = IllegalArgumentException.class)
@@ -186,8 +290,9 @@ public class IntentBuilderTest {
   public void classNameWithContext() {
     Intent mock = mock(Intent.class);
     Context context = mock(Context.class);
+    when(context.getPackageName()).thenReturn("my.package");
     new IntentBuilder(mock).className(context, "my.package.MyClass");
-    verify(mock, times(1)).setClassName(context, "my.package.MyClass");
+    verify(mock, times(1)).setComponent(new ComponentName("my.package", "my.package.MyClass"));
   }
 
   @Test(expected = IllegalArgumentException.class)
@@ -220,7 +325,7 @@ public class IntentBuilderTest {
   public void classNameWithPackage() {
     Intent mock = mock(Intent.class);
     new IntentBuilder(mock).className("my.package", "MyClass");
-    verify(mock, times(1)).setClassName("my.package", "MyClass");
+    verify(mock, times(1)).setComponent(new ComponentName("my.package", "MyClass"));
   }
 
   @Test(expected = IllegalArgumentException.class)
@@ -360,6 +465,19 @@ public class IntentBuilderTest {
     verify(mock, times(1)).setTypeAndNormalize(type);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void dataAndTypeNull() {
+    new IntentBuilder().dataAndType(mock(Uri.class), null);
+  }
+
+  @Test
+  public void dataAndType() {
+    Intent mock = mock(Intent.class);
+    Uri data = mock(Uri.class);
+    new IntentBuilder(mock).dataAndType(data, "my.type");
+    verify(mock, times(1)).setDataAndType(data, "my.type");
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void extrasBundleNull() {
     Bundle bundle = null;
@@ -388,6 +506,96 @@ public class IntentBuilderTest {
     verify(mock, times(1)).putExtras(intent);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void extrasMapNull() {
+    Map<String, Object> map = null;
+    new IntentBuilder().extras(map);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extrasMapNullValue() {
+    new IntentBuilder().extras(Collections.singletonMap("my_key", null));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extrasMapUnsupportedValue() {
+    new IntentBuilder().extras(Collections.singletonMap("my_key", new Object()));
+  }
+
+  @Test
+  public void extrasMapUnsupportedValueCollected() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("first", new Object());
+    map.put("second", 2);
+    ValidationResult result = new ValidationResult();
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validateInto(result).extras(map);
+    assertEquals(Arrays.asList("Unsupported extra type java.lang.Object"), result.getMessages());
+    verify(mock, times(1)).putExtra("second", 2);
+    verifyNoMoreInteractions(mock);
+  }
+
+  @Test
+  public void extrasMapUnsupportedValueValidationOff() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("first", new Object());
+    map.put("null", null);
+    map.put("second", 2);
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validation(ValidationPolicy.OFF).extras(map);
+    verify(mock, times(1)).putExtra("second", 2);
+    verifyNoMoreInteractions(mock);
+  }
+
+  @Test
+  public void extrasMap() {
+    Bundle bundle = new Bundle();
+    Uri uri = Uri.parse("content://authority/path");
+    ArrayList<Integer> integers = new ArrayList<>(Arrays.asList(1, 2));
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("int", 1);
+    map.put("long", 2L);
+    map.put("boolean", true);
+    map.put("string", "value");
+    map.put("ints", new int[]{1, 2});
+    map.put("strings", new String[]{"a"});
+    map.put("bundle", bundle);
+    map.put("uri", uri);
+    map.put("integers", integers);
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).extras(map);
+    verify(mock, times(1)).putExtra("int", 1);
+    verify(mock, times(1)).putExtra("long", 2L);
+    verify(mock, times(1)).putExtra("boolean", true);
+    verify(mock, times(1)).putExtra("string", "value");
+    verify(mock, times(1)).putExtra("ints", new int[]{1, 2});
+    verify(mock, times(1)).putExtra("strings", new String[]{"a"});
+    verify(mock, times(1)).putExtra("bundle", bundle);
+    verify(mock, times(1)).putExtra("uri", (Parcelable) uri);
+    verify(mock, times(1)).putExtra("integers", integers);
+  }
+
+  @Test
+  public void extrasMapDeferred() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    for (int i = 0; i < 50; i++) {
+      map.put("key_" + i, i % 2 == 0 ? (Object) i : "value_" + i);
+    }
+    Intent intent = new IntentBuilder().deferred().extras(map).build();
+    assertEquals(50, intent.getExtras().size());
+    assertEquals(48, intent.getIntExtra("key_48", 0));
+    assertEquals("value_49", intent.getStringExtra("key_49"));
+  }
+
+  @Test
+  public void extraTypeOf() {
+    assertEquals(ExtraType.INT, ExtraType.of(1));
+    assertEquals(ExtraType.INT, ExtraType.of(2));
+    assertEquals(ExtraType.STRING_ARRAY, ExtraType.of(new String[]{"a"}));
+    assertEquals(ExtraType.INTEGER_LIST, ExtraType.of(new ArrayList<>(Arrays.asList(1))));
+    assertEquals(ExtraType.STRING_LIST, ExtraType.of(new ArrayList<>(Arrays.asList("a"))));
+  }
+
   // //////////////////////
   // Primitive extras
   // //////////////////////
@@ -789,6 +997,62 @@ public class IntentBuilderTest {
     verify(mock, times(1)).putExtra("my_key", array);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void extraIntListNullValue() {
+    IntList list = null;
+    new IntentBuilder().extra("my_key", list);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extraIntListEmptyValue() {
+    new IntentBuilder().extra("my_key", new IntList());
+  }
+
+  @Test
+  public void extraIntList() {
+    IntList list = new IntList();
+    list.add(1);
+    list.add(2);
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).extra("my_key", list);
+    verify(mock, times(1)).putExtra("my_key", new int[]{1, 2});
+  }
+
+  @Test
+  public void extraIntListNullCollected() {
+    ValidationResult result = new ValidationResult();
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validateInto(result)
+        .extra("my_key", (IntList) null)
+        .extra("other_key", (LongList) null);
+    assertEquals(Arrays.asList("Value must not be null", "Value must not be null"),
+        result.getMessages());
+    verifyZeroInteractions(mock);
+  }
+
+  @Test
+  public void extraIntListNullValidationOff() {
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validation(ValidationPolicy.OFF)
+        .extra("my_key", (IntList) null)
+        .extra("other_key", (LongList) null);
+    verify(mock, times(1)).putExtra("my_key", (int[]) null);
+    verify(mock, times(1)).putExtra("other_key", (long[]) null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extraLongListEmptyValue() {
+    new IntentBuilder().extra("my_key", new LongList());
+  }
+
+  @Test
+  public void extraLongList() {
+    LongList list = LongList.wrap(new long[]{1L, 2L});
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).extra("my_key", list);
+    verify(mock, times(1)).putExtra("my_key", new long[]{1L, 2L});
+  }
+
   // //////////////////////
   // Object extras
   // //////////////////////
@@ -1146,6 +1410,504 @@ public class IntentBuilderTest {
     verify(mock, times(1)).putExtra("my_key", list);
   }
 
+  @Test
+  public void extraStringListCollection() {
+    ArrayList<String> expected = new ArrayList<>(Arrays.asList("a", "b"));
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).extraStringList("my_key", Collections.unmodifiableList(expected));
+    verify(mock, times(1)).putExtra("my_key", expected);
+  }
+
+  @Test
+  public void extraStringListIterable() {
+    final ArrayList<String> expected = new ArrayList<>(Arrays.asList("a", "b", "c"));
+    Iterable<String> iterable = new Iterable<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return expected.iterator();
+      }
+    };
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).extraStringList("my_key", iterable, 1);
+    verify(mock, times(1)).putExtra("my_key", expected);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extraStringListIterableEmptyValue() {
+    new IntentBuilder().extraStringList("my_key", Collections.<String>emptySet());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extraStringListIterableZeroSizeHint() {
+    new IntentBuilder().extraStringList("my_key", Collections.singleton("a"), 0);
+  }
+
+  @Test
+  public void extraParcelableListIterable() {
+    Uri uri = Uri.parse("content://authority/path");
+    Intent intent = new IntentBuilder()
+        .extraParcelableList("my_key", Collections.singleton(uri))
+        .build();
+    assertEquals(Collections.singletonList(uri), intent.getParcelableArrayListExtra("my_key"));
+  }
+
+  @Test
+  public void extraCharSequenceListAsync() {
+    final ArrayList<CharSequence> values = new ArrayList<>();
+    IntentBuilder builder = new IntentBuilder()
+        .extraCharSequenceListAsync("my_key", new Callable<List<CharSequence>>() {
+          @Override
+          public List<CharSequence> call() {
+            return values;
+          }
+        });
+    values.add("late");
+    Intent intent = builder.build();
+    assertEquals(values, intent.getCharSequenceArrayListExtra("my_key"));
+    assertNotSame(values, intent.getCharSequenceArrayListExtra("my_key"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void extraStringListAsyncNullValue() {
+    new IntentBuilder()
+        .extraStringListAsync("my_key", new Callable<Set<String>>() {
+          @Override
+          public Set<String> call() {
+            return null;
+          }
+        })
+        .build();
+  }
+
+  // //////////////////////
+  // Template
+  // //////////////////////
+
+  @Test
+  public void freezeNewIntent() {
+    Intent mock = mock(Intent.class);
+    IntentTemplate template = new IntentBuilder(mock).freeze();
+    Intent first = template.newIntent();
+    Intent second = template.newIntent();
+    assertNotNull(first);
+    assertNotSame(mock, first);
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void freezeWith() {
+    Intent mock = mock(Intent.class);
+    IntentTemplate template = new IntentBuilder(mock).freeze();
+    Intent intent = template.with().build();
+    assertNotNull(intent);
+    assertNotSame(mock, intent);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void freezeWithValidatesOverrides() {
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).freeze().with().extra("", 1);
+  }
+
+  @Test
+  public void buildSharedNotChangedByBuilder() {
+    InternPool.clear();
+    IntentBuilder builder = new IntentBuilder(Intent.ACTION_VIEW).extra("my_key", 1);
+    Intent shared = builder.buildShared();
+    builder.action(Intent.ACTION_EDIT).extra("my_key", 2).flag(Intent.FLAG_ACTIVITY_NEW_TASK);
+    assertEquals(Intent.ACTION_VIEW, shared.getAction());
+    assertEquals(1, shared.getIntExtra("my_key", 0));
+    assertEquals(0, shared.getFlags());
+    assertSame(shared, new IntentBuilder(Intent.ACTION_VIEW).extra("my_key", 1).buildShared());
+    InternPool.clear();
+  }
+
+  // //////////////////////
+  // Shared extras
+  // //////////////////////
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sharedExtrasNull() {
+    new IntentBuilder().sharedExtras(null);
+  }
+
+  @Test
+  public void sharedExtras() {
+    Intent mock = mock(Intent.class);
+    Bundle bundle = mock(Bundle.class);
+    FrozenExtras frozen = mock(FrozenExtras.class);
+    when(frozen.newBundle()).thenReturn(bundle);
+    new IntentBuilder(mock).sharedExtras(frozen);
+    verify(mock, times(1)).replaceExtras(bundle);
+  }
+
+  @Test
+  public void sharedExtrasReplaceDeferred() {
+    Intent mock = mock(Intent.class);
+    Bundle bundle = mock(Bundle.class);
+    FrozenExtras frozen = mock(FrozenExtras.class);
+    when(frozen.newBundle()).thenReturn(bundle);
+    new IntentBuilder(mock).deferred().extra("my_key", 1).sharedExtras(frozen).build();
+    InOrder order = inOrder(mock);
+    order.verify(mock).putExtra("my_key", 1);
+    order.verify(mock).replaceExtras(bundle);
+  }
+
+  @Test
+  public void sharedExtrasSizes() {
+    FrozenExtras frozen = mock(FrozenExtras.class);
+    when(frozen.newBundle()).thenReturn(mock(Bundle.class));
+    when(frozen.sizes()).thenReturn(Collections.singletonMap("shared", 24));
+    IntentBuilder builder = new IntentBuilder(mock(Intent.class));
+    builder.estimatedSizeBytes();
+    builder.extra("my_key", 1).sharedExtras(frozen);
+    assertEquals(Collections.singletonMap("shared", 24), builder.estimatedExtraSizes());
+  }
+
+  // //////////////////////
+  // Deferred
+  // //////////////////////
+
+  @Test
+  public void deferredFlags() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).deferred()
+        .flags(Intent.FLAG_ACTIVITY_CLEAR_TASK, Intent.FLAG_ACTIVITY_CLEAR_TOP)
+        .flag(Intent.FLAG_ACTIVITY_NEW_TASK);
+    verify(mock, never()).addFlags(anyInt());
+    builder.build();
+    verify(mock, times(1)).addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK
+        | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
+  }
+
+  @Test
+  public void deferredCategories() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).deferred()
+        .categories(Intent.CATEGORY_APP_BROWSER, Intent.CATEGORY_APP_EMAIL)
+        .categories(Intent.CATEGORY_APP_BROWSER);
+    verify(mock, never()).addCategory(anyString());
+    builder.build();
+    verify(mock, times(1)).addCategory(Intent.CATEGORY_APP_BROWSER);
+    verify(mock, times(1)).addCategory(Intent.CATEGORY_APP_EMAIL);
+  }
+
+  @Test
+  public void deferredExtras() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).deferred()
+        .extra("int_key", 1)
+        .extra("string_key", "value")
+        .extra("array_key", new long[]{1L});
+    verifyZeroInteractions(mock);
+    builder.build();
+    InOrder order = inOrder(mock);
+    order.verify(mock).putExtra("int_key", 1);
+    order.verify(mock).putExtra("string_key", "value");
+    order.verify(mock).putExtra(eq("array_key"), any(long[].class));
+    verify(mock, never()).putExtras(any(Bundle.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void deferredValidates() {
+    new IntentBuilder().deferred().extra("", 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void expectedExtrasZero() {
+    new IntentBuilder().expectedExtras(0);
+  }
+
+  @Test
+  public void expectedExtras() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).expectedExtras(2);
+    for (int i = 0; i < 20; i++) {
+      builder.extra("key_" + i, i);
+    }
+    verifyZeroInteractions(mock);
+    builder.build();
+    verify(mock, times(20)).putExtra(anyString(), anyInt());
+    verify(mock, never()).putExtras(any(Bundle.class));
+  }
+
+  // //////////////////////
+  // Fork
+  // //////////////////////
+
+  @Test
+  public void forkStartsFromParent() {
+    IntentBuilder parent = new IntentBuilder(Intent.ACTION_VIEW)
+        .flag(Intent.FLAG_ACTIVITY_NEW_TASK)
+        .extra("shared", 1);
+    Intent intent = parent.fork().build();
+    assertEquals(Intent.ACTION_VIEW, intent.getAction());
+    assertEquals(Intent.FLAG_ACTIVITY_NEW_TASK, intent.getFlags());
+    assertEquals(1, intent.getIntExtra("shared", 0));
+  }
+
+  @Test
+  public void forkIsolatedFromParent() {
+    IntentBuilder parent = new IntentBuilder(Intent.ACTION_VIEW).extra("shared", 1);
+    IntentBuilder child = parent.fork();
+    parent.action(Intent.ACTION_EDIT).extra("parent", true).flag(Intent.FLAG_ACTIVITY_NEW_TASK);
+    Intent intent = child.build();
+    assertEquals(Intent.ACTION_VIEW, intent.getAction());
+    assertEquals(0, intent.getFlags());
+    assertFalse(intent.hasExtra("parent"));
+    assertEquals(1, intent.getIntExtra("shared", 0));
+  }
+
+  @Test
+  public void forkIsolatedFromSiblings() {
+    IntentBuilder parent = new IntentBuilder(Intent.ACTION_VIEW)
+        .categories(Intent.CATEGORY_DEFAULT)
+        .extra("shared", 1);
+    Intent first = parent.fork()
+        .action(Intent.ACTION_EDIT)
+        .categories(Intent.CATEGORY_BROWSABLE)
+        .extra("first", true)
+        .build();
+    Intent second = parent.fork().extra("shared", 2).build();
+    Intent base = parent.build();
+
+    assertEquals(Intent.ACTION_EDIT, first.getAction());
+    assertTrue(first.hasCategory(Intent.CATEGORY_BROWSABLE));
+    assertEquals(1, first.getIntExtra("shared", 0));
+
+    assertEquals(Intent.ACTION_VIEW, second.getAction());
+    assertFalse(second.hasCategory(Intent.CATEGORY_BROWSABLE));
+    assertFalse(second.hasExtra("first"));
+    assertEquals(2, second.getIntExtra("shared", 0));
+
+    assertEquals(Intent.ACTION_VIEW, base.getAction());
+    assertEquals(1, base.getCategories().size());
+    assertFalse(base.hasExtra("first"));
+    assertEquals(1, base.getIntExtra("shared", 0));
+  }
+
+  @Test
+  public void forkFlushesParentLog() {
+    IntentBuilder parent = new IntentBuilder().deferred().extra("shared", 1);
+    assertEquals(1, parent.fork().build().getIntExtra("shared", 0));
+  }
+
+  @Test
+  public void forkOfFork() {
+    IntentBuilder child = new IntentBuilder(Intent.ACTION_VIEW).fork().extra("child", 1);
+    Intent grandChild = child.fork().extra("grand_child", 2).build();
+    assertEquals(Intent.ACTION_VIEW, grandChild.getAction());
+    assertEquals(1, grandChild.getIntExtra("child", 0));
+    assertEquals(2, grandChild.getIntExtra("grand_child", 0));
+    assertFalse(child.build().hasExtra("grand_child"));
+  }
+
+  @Test
+  public void forkReset() {
+    IntentBuilder child = new IntentBuilder(Intent.ACTION_VIEW).extra("shared", 1).fork();
+    Intent intent = child.reset().build();
+    assertNull(intent.getAction());
+    assertFalse(intent.hasExtra("shared"));
+  }
+
+  @Test
+  public void forkWritesDirectly() throws Exception {
+    Field log = IntentBuilder.class.getDeclaredField("mLog");
+    log.setAccessible(true);
+    IntentBuilder child = new IntentBuilder(Intent.ACTION_VIEW).extra("shared", 1).fork()
+        .extra("child", 2);
+    assertNull(log.get(child));
+    assertEquals(2, child.build().getIntExtra("child", 0));
+    IntentBuilder deferredChild = new IntentBuilder().deferred().fork();
+    assertNotNull(log.get(deferredChild));
+  }
+
+  @Test
+  public void forkBuildWithoutChanges() {
+    IntentBuilder parent = new IntentBuilder(Intent.ACTION_VIEW).extra("shared", 1);
+    Intent first = parent.fork().build();
+    Intent second = parent.fork().build();
+    assertNotSame(first, second);
+    assertEquals(1, first.getIntExtra("shared", 0));
+    first.putExtra("shared", 2);
+    assertEquals(1, second.getIntExtra("shared", 0));
+  }
+
+  @Test
+  public void forkDoesNotTouchUnchangedParent() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder parent = new IntentBuilder(mock);
+    parent.fork();
+    parent.fork();
+    verifyZeroInteractions(mock);
+  }
+
+  // //////////////////////
+  // Validation policy
+  // //////////////////////
+
+  @Test
+  public void validationOff() {
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validation(ValidationPolicy.OFF).extra("", 1);
+    verify(mock, times(1)).putExtra("", 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void validationStrict() {
+    new IntentBuilder().validation(ValidationPolicy.STRICT).extra("", 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void validationNull() {
+    new IntentBuilder().validation(null);
+  }
+
+  @Test
+  public void validationDebugOnly() {
+    try {
+      ValidationPolicy.resetDebuggable();
+      assertEquals(PreConditions.class.desiredAssertionStatus(),
+          ValidationPolicy.DEBUG_ONLY.isEnabled());
+      ValidationPolicy.setDebuggable(true);
+      assertTrue(ValidationPolicy.DEBUG_ONLY.isEnabled());
+      ValidationPolicy.setDebuggable(false);
+      assertFalse(ValidationPolicy.DEBUG_ONLY.isEnabled());
+      Intent mock = mock(Intent.class);
+      new IntentBuilder(mock).validation(ValidationPolicy.DEBUG_ONLY).extra("", 1);
+      verify(mock, times(1)).putExtra("", 1);
+    } finally {
+      ValidationPolicy.resetDebuggable();
+    }
+  }
+
+  @Test
+  public void validationDebugOnlyFromContext() {
+    try {
+      ValidationPolicy.resetDebuggable();
+      ApplicationInfo info = new ApplicationInfo();
+      info.flags = ApplicationInfo.FLAG_DEBUGGABLE;
+      Context context = mock(Context.class);
+      when(context.getApplicationInfo()).thenReturn(info);
+      IntentBuilder builder = new IntentBuilder().validation(ValidationPolicy.DEBUG_ONLY);
+      builder.context(context);
+      assertTrue(ValidationPolicy.isDebuggable());
+      try {
+        builder.extra("", 1);
+        throw new AssertionError("Expected DEBUG_ONLY to validate in a debuggable app");
+      } catch (IllegalArgumentException expected) {
+      }
+
+      ValidationPolicy.resetDebuggable();
+      info.flags = 0;
+      new IntentBuilder().context(context);
+      assertFalse(ValidationPolicy.isDebuggable());
+    } finally {
+      ValidationPolicy.resetDebuggable();
+    }
+  }
+
+  @Test
+  public void validationFromProperty() {
+    assertEquals(ValidationPolicy.STRICT, ValidationPolicy.fromProperty(null));
+    assertEquals(ValidationPolicy.OFF, ValidationPolicy.fromProperty("off"));
+    assertEquals(ValidationPolicy.DEBUG_ONLY, ValidationPolicy.fromProperty("debug_only"));
+  }
+
+  @Test
+  public void validationFromPropertyUnknown() {
+    // fromProperty() logs and falls back to STRICT; Log is not available on the JVM.
+    assertNull(ValidationPolicy.parse("sometimes"));
+    assertEquals(ValidationPolicy.OFF, ValidationPolicy.parse("OFF"));
+  }
+
+  @Test
+  public void validationMessage() {
+    try {
+      new IntentBuilder().extra("", 1);
+    } catch (IllegalArgumentException e) {
+      assertEquals("Name must not be empty", e.getMessage());
+      assertEquals(Violation.stackTraces(), e.getStackTrace().length > 0);
+      return;
+    }
+    throw new AssertionError("Expected an IllegalArgumentException");
+  }
+
+  @Test
+  public void validateIntoCollects() {
+    ValidationResult result = new ValidationResult();
+    IntentBuilder builder = new IntentBuilder().validateInto(result)
+        .action("")
+        .flags((int[]) null)
+        .extra("", 1)
+        .extra("key", (String) null)
+        .extra("valid", 1);
+    assertNull(builder.tryBuild());
+    assertEquals(4, result.size());
+    assertEquals(Arrays.asList("Action must not be empty", "Flags must not be null",
+        "Name must not be empty", "Value must not be null"), result.getMessages());
+  }
+
+  @Test
+  public void validateIntoSkipsRejectedCalls() {
+    Intent mock = mock(Intent.class);
+    new IntentBuilder(mock).validateInto(new ValidationResult())
+        .action("")
+        .extra("", 1)
+        .extra("valid", 1)
+        .component(null);
+    verify(mock, times(1)).putExtra("valid", 1);
+    verify(mock, never()).setAction(anyString());
+    verify(mock, never()).putExtra("", 1);
+    verify(mock, never()).setComponent(any(ComponentName.class));
+  }
+
+  @Test
+  public void validateIntoCopiedToForks() {
+    ValidationResult result = new ValidationResult();
+    IntentBuilder parent = new IntentBuilder().validateInto(result).extra("shared", 1);
+    assertSame(result, parent.validationResult());
+    IntentBuilder child = parent.fork().extra("", 2).extra("child", 3);
+    assertTrue(result.isValid());
+    assertNotSame(result, child.validationResult());
+    assertEquals(1, child.validationResult().size());
+    assertEquals("Name must not be empty", child.validationResult().getMessage(0));
+    assertNull(child.tryBuild());
+    assertEquals(3, child.build().getIntExtra("child", 0));
+    assertNotNull(parent.tryBuild());
+
+    parent.extra(null, 4);
+    assertEquals(1, parent.fork().validationResult().size());
+    assertNull(new IntentBuilder().validationResult());
+  }
+
+  @Test
+  public void validateIntoReuse() {
+    ValidationResult result = new ValidationResult();
+    IntentBuilder builder = new IntentBuilder().validateInto(result);
+    for (int i = 0; i < 10; i++) {
+      builder.extra("", i);
+    }
+    assertEquals(10, result.size());
+    assertNull(builder.tryBuild());
+
+    result.clear();
+    assertTrue(result.isValid());
+    Intent intent = builder.reset().extra("key", 1).tryBuild();
+    assertNotNull(intent);
+    assertEquals(1, intent.getIntExtra("key", 0));
+  }
+
+  @Test
+  public void tryBuildWithoutResult() {
+    assertNotNull(new IntentBuilder().action(Intent.ACTION_VIEW).tryBuild());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void validateIntoStillThrowsOnBuild() {
+    new IntentBuilder().validateInto(new ValidationResult()).buildAsync(null);
+  }
+
   // //////////////////////
   // Util
   // //////////////////////
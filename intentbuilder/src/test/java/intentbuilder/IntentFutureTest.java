@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntentFutureTest {
+
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private final ExecutorService mPool = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    mPool.shutdownNow();
+  }
+
+  @Test
+  public void typedDispatch() throws Exception {
+    Intent intent = new IntentBuilder("my_action")
+        .extraAsync("int", value(5))
+        .extraAsync("string", value("value"))
+        .extraAsync("longs", value(new long[]{1L, 2L}))
+        .extraAsync("list", value(new ArrayList<>(Arrays.asList(1, 2))))
+        .buildAsync(DIRECT)
+        .get();
+    assertEquals("my_action", intent.getAction());
+    assertEquals(5, intent.getIntExtra("int", 0));
+    assertEquals("value", intent.getStringExtra("string"));
+    assertArrayEquals(new long[]{1L, 2L}, intent.getLongArrayExtra("longs"));
+    assertEquals(Arrays.asList(1, 2), intent.getIntegerArrayListExtra("list"));
+  }
+
+  @Test
+  public void parallel() throws Exception {
+    final CountDownLatch started = new CountDownLatch(3);
+    IntentBuilder builder = new IntentBuilder().deferred();
+    for (int i = 0; i < 3; i++) {
+      final int index = i;
+      builder.extraAsync("key" + i, new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          started.countDown();
+          // Only returns if all three producers run at the same time.
+          assertTrue(started.await(5, TimeUnit.SECONDS));
+          return index;
+        }
+      });
+    }
+    Intent intent = builder.buildAsync(mPool).get(5, TimeUnit.SECONDS);
+    assertEquals(2, intent.getIntExtra("key2", -1));
+  }
+
+  @Test
+  public void noAsyncExtras() throws Exception {
+    IntentFuture future = new IntentBuilder("my_action").buildAsync(DIRECT);
+    assertTrue(future.isDone());
+    assertEquals("my_action", future.get().getAction());
+  }
+
+  @Test
+  public void producerFailure() throws Exception {
+    final IllegalStateException failure = new IllegalStateException("failure");
+    IntentFuture future = new IntentBuilder()
+        .extraAsync("my_key", new Callable<Object>() {
+          @Override
+          public Object call() {
+            throw failure;
+          }
+        })
+        .buildAsync(DIRECT);
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void validationFailure() throws Exception {
+    IntentFuture future = new IntentBuilder()
+        .extraAsync("my_key", value(new int[0]))
+        .buildAsync(DIRECT);
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void unsupportedType() throws Exception {
+    IntentFuture future = new IntentBuilder()
+        .extraAsync("my_key", value(new Object()))
+        .buildAsync(DIRECT);
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void callback() {
+    final Intent[] result = new Intent[1];
+    new IntentBuilder("my_action").extraAsync("my_key", value(1L)).buildAsync(DIRECT)
+        .then(new IntentFuture.Callback() {
+          @Override
+          public void onIntent(Intent intent) {
+            result[0] = intent;
+          }
+
+          @Override
+          public void onFailure(Throwable error) {
+            fail();
+          }
+        });
+    assertEquals(1L, result[0].getLongExtra("my_key", 0L));
+  }
+
+  @Test
+  public void cancel() {
+    IntentFuture future = new IntentBuilder()
+        .extraAsync("my_key", value(1))
+        .buildAsync(new Executor() {
+          @Override
+          public void execute(Runnable command) {
+          }
+        });
+    assertFalse(future.isDone());
+    assertTrue(future.cancel(false));
+    assertTrue(future.isCancelled());
+    assertTrue(future.isDone());
+  }
+
+  @Test
+  public void buildRunsProducersInline() {
+    Intent intent = new IntentBuilder().extraAsync("my_key", value(true)).build();
+    assertTrue(intent.getBooleanExtra("my_key", false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void blankName() {
+    new IntentBuilder().extraAsync("", value(1));
+  }
+
+  private static <T> Callable<T> value(final T value) {
+    return new Callable<T>() {
+      @Override
+      public T call() {
+        return value;
+      }
+    };
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntentJsonLoaderTest {
+
+  @Test
+  public void fields() throws IOException {
+    Intent intent = loadOne("{"
+        + "\"action\": \"my_action\","
+        + "\"data\": \"content://my_data\","
+        + "\"type\": \"text/plain\","
+        + "\"component\": {\"package\": \"my.package\", \"class\": \"my.package.MyService\"},"
+        + "\"flags\": [1, 2],"
+        + "\"categories\": [\"a\", \"b\"],"
+        + "\"unknown\": {\"nested\": [1, 2]}"
+        + "}");
+    assertEquals("my_action", intent.getAction());
+    assertEquals("content://my_data", intent.getDataString());
+    assertEquals("text/plain", intent.getType());
+    assertEquals("my.package.MyService", intent.getComponent().getClassName());
+    assertEquals(3, intent.getFlags());
+    assertTrue(intent.hasCategory("b"));
+  }
+
+  @Test
+  public void singleFlag() throws IOException {
+    assertEquals(4, loadOne("{\"flags\": 4}").getFlags());
+  }
+
+  @Test
+  public void extras() throws IOException {
+    Intent intent = loadOne("{\"extras\": {"
+        + "\"boolean\": {\"boolean\": true},"
+        + "\"byte\": {\"byte\": -2},"
+        + "\"char\": {\"char\": \"c\"},"
+        + "\"float\": {\"float\": 1.5},"
+        + "\"long\": {\"long\": 9007199254740993},"
+        + "\"string\": {\"string\": \"value\"},"
+        + "\"ints\": {\"int_array\": [1, 2, 3]},"
+        + "\"shorts\": {\"short_array\": [4]},"
+        + "\"doubles\": {\"double_array\": [0.5, 1]},"
+        + "\"chars\": {\"char_array\": \"ab\"},"
+        + "\"strings\": {\"string_array\": [\"x\", \"y\"]},"
+        + "\"list\": {\"integer_list\": [7, 8]},"
+        + "\"bundle\": {\"bundle\": {\"inner\": {\"int\": 5}}}"
+        + "}}");
+    assertEquals(true, intent.getBooleanExtra("boolean", false));
+    assertEquals(-2, intent.getByteExtra("byte", (byte) 0));
+    assertEquals('c', intent.getCharExtra("char", ' '));
+    assertEquals(1.5f, intent.getFloatExtra("float", 0f), 0f);
+    assertEquals(9007199254740993L, intent.getLongExtra("long", 0L));
+    assertEquals("value", intent.getStringExtra("string"));
+    assertArrayEquals(new int[]{1, 2, 3}, intent.getIntArrayExtra("ints"));
+    assertArrayEquals(new short[]{4}, intent.getShortArrayExtra("shorts"));
+    assertArrayEquals(new double[]{0.5d, 1d}, intent.getDoubleArrayExtra("doubles"), 0d);
+    assertArrayEquals(new char[]{'a', 'b'}, intent.getCharArrayExtra("chars"));
+    assertArrayEquals(new String[]{"x", "y"}, intent.getStringArrayExtra("strings"));
+    assertEquals(Arrays.asList(7, 8), intent.getIntegerArrayListExtra("list"));
+    Bundle bundle = intent.getBundleExtra("bundle");
+    assertEquals(5, bundle.getInt("inner"));
+  }
+
+  @Test
+  public void largeArray() throws IOException {
+    StringBuilder json = new StringBuilder("{\"extras\": {\"ids\": {\"long_array\": [");
+    for (int i = 0; i < 10000; i++) {
+      json.append(i == 0 ? "" : ",").append(i);
+    }
+    json.append("]}}}");
+    long[] ids = loadOne(json.toString()).getLongArrayExtra("ids");
+    assertEquals(10000, ids.length);
+    assertEquals(9999L, ids[9999]);
+  }
+
+  @Test
+  public void streamsEachIntent() throws IOException {
+    final List<String> actions = new ArrayList<>();
+    int count = IntentJsonLoader.load(
+        new StringReader("[{\"action\": \"a\"}, {\"action\": \"b\"}]"),
+        new IntentJsonLoader.Callback() {
+          @Override
+          public void onIntent(IntentBuilder builder) {
+            actions.add(builder.build().getAction());
+          }
+        });
+    assertEquals(2, count);
+    assertEquals(Arrays.asList("a", "b"), actions);
+  }
+
+  @Test(expected = IOException.class)
+  public void unknownType() throws IOException {
+    loadOne("{\"extras\": {\"my_key\": {\"uuid\": \"x\"}}}");
+  }
+
+  @Test(expected = IOException.class)
+  public void twoTypes() throws IOException {
+    loadOne("{\"extras\": {\"my_key\": {\"int\": 1, \"long\": 2}}}");
+  }
+
+  @Test(expected = IOException.class)
+  public void notASingleChar() throws IOException {
+    loadOne("{\"extras\": {\"my_key\": {\"char\": \"ab\"}}}");
+  }
+
+  @Test(expected = IOException.class)
+  public void emptyExtra() throws IOException {
+    loadOne("{\"extras\": {\"my_key\": {}}}");
+  }
+
+  @Test
+  public void byteOutOfRange() {
+    assertOutOfRange("{\"extras\": {\"my_key\": {\"byte\": 128}}}");
+    assertOutOfRange("{\"extras\": {\"my_key\": {\"byte\": -129}}}");
+    assertOutOfRange("{\"extras\": {\"my_key\": {\"byte_array\": [1, 300]}}}");
+  }
+
+  @Test
+  public void shortOutOfRange() {
+    assertOutOfRange("{\"extras\": {\"my_key\": {\"short\": 32768}}}");
+    assertOutOfRange("{\"extras\": {\"my_key\": {\"short_array\": [-32769]}}}");
+  }
+
+  @Test
+  public void byteAndShortBounds() throws IOException {
+    Intent intent = loadOne("{\"extras\": {"
+        + "\"b\": {\"byte\": -128}, \"bs\": {\"byte_array\": [127]},"
+        + "\"s\": {\"short\": 32767}, \"ss\": {\"short_array\": [-32768]}}}");
+    assertEquals(Byte.MIN_VALUE, intent.getByteExtra("b", (byte) 0));
+    assertArrayEquals(new byte[]{Byte.MAX_VALUE}, intent.getByteArrayExtra("bs"));
+    assertEquals(Short.MAX_VALUE, intent.getShortExtra("s", (short) 0));
+    assertArrayEquals(new short[]{Short.MIN_VALUE}, intent.getShortArrayExtra("ss"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builderValidation() throws IOException {
+    loadOne("{\"extras\": {\"my_key\": {\"int_array\": []}}}");
+  }
+
+  private static void assertOutOfRange(String json) {
+    try {
+      loadOne(json);
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("my_key"));
+      return;
+    }
+    throw new AssertionError("Expected an IOException for " + json);
+  }
+
+  private static Intent loadOne(String json) throws IOException {
+    final Intent[] result = new Intent[1];
+    IntentJsonLoader.load(new StringReader("[" + json + "]"), new IntentJsonLoader.Callback() {
+      @Override
+      public void onIntent(IntentBuilder builder) {
+        result[0] = builder.build();
+      }
+    });
+    return result[0];
+  }
+}
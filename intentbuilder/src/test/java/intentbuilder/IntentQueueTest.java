@@ -0,0 +1,341 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntentQueueTest {
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void appendAndDrain() throws IOException {
+    IntentQueue queue = new IntentQueue(mFolder.newFolder());
+    assertTrue(queue.isEmpty());
+    append(queue, 0, 5);
+    assertFalse(queue.isEmpty());
+    Collector collector = new Collector();
+    assertEquals(5, queue.drain(2, collector));
+    assertEquals(3, collector.mBatches);
+    assertIndexes(collector.mSpecs, 0, 5);
+    assertTrue(queue.isEmpty());
+    assertEquals(0, queue.drain(2, collector));
+    queue.close();
+  }
+
+  @Test
+  public void rollsSegments() throws IOException {
+    File directory = mFolder.newFolder();
+    IntentQueue queue = new IntentQueue(directory, 128);
+    append(queue, 0, 20);
+    assertTrue(segments(directory) > 1);
+    Collector collector = new Collector();
+    assertEquals(20, queue.drain(100, collector));
+    assertIndexes(collector.mSpecs, 0, 20);
+    assertEquals(1, segments(directory));
+    queue.close();
+  }
+
+  @Test
+  public void reopenAfterPartialDrain() throws IOException {
+    File directory = mFolder.newFolder();
+    IntentQueue queue = new IntentQueue(directory, 128);
+    append(queue, 0, 10);
+    queue.sync();
+    try {
+      queue.drain(4, new FailingCollector(2));
+      fail();
+    } catch (IOException expected) {
+    }
+    queue.close();
+
+    queue = new IntentQueue(directory, 128);
+    Collector collector = new Collector();
+    assertEquals(6, queue.drain(100, collector));
+    assertIndexes(collector.mSpecs, 4, 10);
+    queue.close();
+  }
+
+  @Test
+  public void failedBatchIsKept() throws IOException {
+    IntentQueue queue = new IntentQueue(mFolder.newFolder());
+    append(queue, 0, 3);
+    try {
+      queue.drain(10, new FailingCollector(1));
+      fail();
+    } catch (IOException expected) {
+    }
+    Collector collector = new Collector();
+    assertEquals(3, queue.drain(10, collector));
+    assertIndexes(collector.mSpecs, 0, 3);
+    queue.close();
+  }
+
+  @Test
+  public void truncatesCorruptTail() throws IOException {
+    File directory = mFolder.newFolder();
+    IntentQueue queue = new IntentQueue(directory);
+    append(queue, 0, 3);
+    queue.close();
+
+    // Flip a payload byte of the last record.
+    RandomAccessFile file = new RandomAccessFile(new File(directory, segment(directory)), "rw");
+    int offset = 0;
+    for (int i = 0; i < 2; i++) {
+      file.seek(offset);
+      offset += 8 + file.readInt();
+    }
+    file.seek(offset + 10);
+    int b = file.read();
+    file.seek(offset + 10);
+    file.write(b ^ 0xff);
+    file.close();
+
+    queue = new IntentQueue(directory);
+    append(queue, 3, 4);
+    Collector collector = new Collector();
+    queue.drain(10, collector);
+    assertEquals(3, collector.mSpecs.size());
+    assertEquals(0, collector.mSpecs.get(0).getExtra("index"));
+    assertEquals(1, collector.mSpecs.get(1).getExtra("index"));
+    assertEquals(3, collector.mSpecs.get(2).getExtra("index"));
+    queue.close();
+  }
+
+  @Test
+  public void corruptHeadReplaysFromStart() throws IOException {
+    File directory = mFolder.newFolder();
+    IntentQueue queue = new IntentQueue(directory);
+    append(queue, 0, 4);
+    try {
+      queue.drain(2, new FailingCollector(2));
+      fail();
+    } catch (IOException expected) {
+    }
+    queue.close();
+
+    RandomAccessFile head = new RandomAccessFile(new File(directory, IntentQueue.HEAD), "rw");
+    head.seek(9);
+    head.write(0x7f);
+    head.close();
+
+    queue = new IntentQueue(directory);
+    Collector collector = new Collector();
+    assertEquals(4, queue.drain(10, collector));
+    queue.close();
+  }
+
+  @Test
+  public void skipsUndecodableRecord() throws IOException {
+    File directory = mFolder.newFolder();
+    IntentQueue queue = new IntentQueue(directory);
+    append(queue, 0, 4);
+    queue.close();
+
+    // Give the third record an unknown format version and a matching checksum.
+    RandomAccessFile file = new RandomAccessFile(new File(directory, segment(directory)), "rw");
+    int offset = 0;
+    for (int i = 0; i < 2; i++) {
+      file.seek(offset);
+      offset += 8 + file.readInt();
+    }
+    file.seek(offset);
+    byte[] payload = new byte[file.readInt()];
+    file.seek(offset + 8);
+    file.readFully(payload);
+    payload[0] = 99;
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    file.seek(offset + 4);
+    file.writeInt((int) crc.getValue());
+    file.write(payload);
+    file.close();
+
+    queue = new IntentQueue(directory);
+    Collector collector = new Collector();
+    try {
+      queue.drain(10, collector);
+      fail();
+    } catch (IOException expected) {
+    }
+    assertIndexes(collector.mSpecs, 0, 2);
+    assertEquals(1, queue.skip(1));
+    assertEquals(1, queue.drain(10, collector));
+    assertEquals(3, collector.mSpecs.get(2).getExtra("index"));
+    assertTrue(queue.isEmpty());
+    queue.close();
+  }
+
+  @Test
+  public void skipsRejectedBatch() throws IOException {
+    IntentQueue queue = new IntentQueue(mFolder.newFolder(), 128);
+    append(queue, 0, 10);
+    assertEquals(7, queue.skip(7));
+    Collector collector = new Collector();
+    assertEquals(3, queue.drain(10, collector));
+    assertIndexes(collector.mSpecs, 7, 10);
+    assertEquals(0, queue.skip(1));
+    queue.close();
+  }
+
+  @Test
+  public void serializableAllowList() throws IOException {
+    File directory = mFolder.newFolder();
+    IntentQueue queue = new IntentQueue(directory);
+    queue.append(IntentSpec.builder().extra("date", new Date(42L)).build());
+    try {
+      queue.drain(1, new Collector());
+      fail();
+    } catch (IOException expected) {
+    }
+    queue.close();
+
+    queue = new IntentQueue(directory, IntentQueue.DEFAULT_SEGMENT_SIZE, Date.class);
+    Collector collector = new Collector();
+    assertEquals(1, queue.drain(1, collector));
+    assertEquals(new Date(42L), collector.mSpecs.get(0).getExtra("date"));
+    queue.close();
+  }
+
+  @Test
+  public void appendWhileHandling() throws Exception {
+    final IntentQueue queue = new IntentQueue(mFolder.newFolder());
+    append(queue, 0, 1);
+    final List<IntentSpec> specs = new ArrayList<>();
+    queue.drain(1, new IntentQueue.Handler() {
+      @Override
+      public void handle(List<IntentSpec> batch) throws Exception {
+        specs.addAll(batch);
+        if (specs.size() == 1) {
+          // Would deadlock if the handler ran under the queue's lock.
+          Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                queue.append(spec(1));
+              } catch (IOException e) {
+                throw new AssertionError(e);
+              }
+            }
+          });
+          producer.start();
+          producer.join(5000);
+          assertFalse(producer.isAlive());
+        }
+      }
+    });
+    assertIndexes(specs, 0, 2);
+    queue.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void recordTooLarge() throws IOException {
+    IntentQueue queue = new IntentQueue(mFolder.newFolder(), 32);
+    queue.append(IntentSpec.builder().extra("my_key", new byte[64]).build());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void closed() throws IOException {
+    IntentQueue queue = new IntentQueue(mFolder.newFolder());
+    queue.close();
+    queue.append(spec(0));
+  }
+
+  private static void append(IntentQueue queue, int from, int to) throws IOException {
+    for (int i = from; i < to; i++) {
+      queue.append(spec(i));
+    }
+  }
+
+  private static IntentSpec spec(int index) {
+    return IntentSpec.builder().action("my_action").extra("index", index).build();
+  }
+
+  private static void assertIndexes(List<IntentSpec> specs, int from, int to) {
+    assertEquals(to - from, specs.size());
+    for (int i = from; i < to; i++) {
+      assertEquals(i, specs.get(i - from).getExtra("index"));
+    }
+  }
+
+  private static int segments(File directory) {
+    return directory.list().length - 1;
+  }
+
+  private static String segment(File directory) {
+    for (String name : directory.list()) {
+      if (!name.equals(IntentQueue.HEAD)) {
+        return name;
+      }
+    }
+    throw new AssertionError();
+  }
+
+  private static class Collector implements IntentQueue.Handler {
+    final List<IntentSpec> mSpecs = new ArrayList<>();
+    int mBatches;
+
+    @Override
+    public void handle(List<IntentSpec> batch) throws Exception {
+      mBatches++;
+      mSpecs.addAll(batch);
+    }
+  }
+
+  /**
+   * Fails on the given batch, counting from 1.
+   */
+  private static class FailingCollector extends Collector {
+    private final int mFailAt;
+
+    FailingCollector(int failAt) {
+      mFailAt = failAt;
+    }
+
+    @Override
+    public void handle(List<IntentSpec> batch) throws Exception {
+      if (mBatches + 1 == mFailAt) {
+        throw new IllegalStateException("Handler failure");
+      }
+      super.handle(batch);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IntentReaderTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void intentNull() {
+    Intent intent = null;
+    new IntentReader(intent);
+  }
+
+  @Test
+  public void extrasOnce() {
+    Intent intent = mock(Intent.class);
+    Bundle extras = mock(Bundle.class);
+    when(intent.getExtras()).thenReturn(extras);
+    new IntentReader(intent);
+    verify(intent, times(1)).getExtras();
+  }
+
+  @Test
+  public void primitive() {
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("my_key")).thenReturn(5);
+    IntentReader reader = new IntentReader(extras);
+    assertEquals(5, reader.getInt("my_key", 0));
+    assertEquals(5, reader.getInt("my_key", 0));
+    verify(extras, times(1)).get("my_key");
+  }
+
+  @Test
+  public void array() {
+    Bundle extras = mock(Bundle.class);
+    long[] value = {1L, 2L};
+    when(extras.get("my_key")).thenReturn(value);
+    assertArrayEquals(value, new IntentReader(extras).getLongArray("my_key"));
+  }
+
+  @Test
+  public void primitiveList() {
+    Bundle extras = mock(Bundle.class);
+    int[] ints = {1, 2};
+    long[] longs = {3L};
+    when(extras.get("ints")).thenReturn(ints);
+    when(extras.get("longs")).thenReturn(longs);
+    IntentReader reader = new IntentReader(extras);
+    IntList intList = reader.getIntList("ints");
+    assertEquals(2, intList.size());
+    assertEquals(2, intList.get(1));
+    intList.set(0, 5);
+    assertEquals(5, ints[0]);
+    assertEquals(LongList.wrap(new long[]{3L}), reader.getLongList("longs"));
+    assertNull(reader.getIntList("longs"));
+  }
+
+  @Test
+  public void missing() {
+    Bundle extras = mock(Bundle.class);
+    IntentReader.Listener listener = mock(IntentReader.Listener.class);
+    IntentReader reader = new IntentReader(extras).listener(listener);
+    assertFalse(reader.has("my_key"));
+    assertEquals(7, reader.getInt("my_key", 7));
+    assertNull(reader.getString("my_key"));
+    verify(listener, times(1)).onMissing("my_key");
+    verify(extras, times(1)).get("my_key");
+  }
+
+  @Test
+  public void missingWithoutExtras() {
+    Intent intent = mock(Intent.class);
+    IntentReader.Listener listener = mock(IntentReader.Listener.class);
+    IntentReader reader = new IntentReader(intent).listener(listener);
+    assertNull(reader.getStringList("my_key"));
+    verify(listener, times(1)).onMissing("my_key");
+  }
+
+  @Test
+  public void wrongType() {
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("my_key")).thenReturn("value");
+    IntentReader.Listener listener = mock(IntentReader.Listener.class);
+    IntentReader reader = new IntentReader(extras).listener(listener);
+    assertEquals(3, reader.getInt("my_key", 3));
+    assertEquals(3, reader.getInt("my_key", 3));
+    verify(listener, times(1)).onWrongType("my_key", Integer.class, "value");
+    verify(listener, never()).onMissing("my_key");
+  }
+
+  @Test
+  public void has() {
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("my_key")).thenReturn(true);
+    IntentReader reader = new IntentReader(extras);
+    assertTrue(reader.has("my_key"));
+    assertTrue(reader.getBoolean("my_key", false));
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntentSpecCodecTest {
+
+  @Test
+  public void roundTripAllTypes() {
+    IntentSpec spec = IntentSpec.builder()
+        .action("my_action")
+        .data("content://my_data/1")
+        .type("text/plain")
+        .className("my.package", "my.package.MyActivity")
+        .setPackage("my.package")
+        .flags(0x10000000, 0x80000000)
+        .categories("a", "b")
+        .extra("boolean", true)
+        .extra("byte", (byte) -3)
+        .extra("char", '\u20ac')
+        .extra("double", -1.5d)
+        .extra("float", Float.NaN)
+        .extra("int", Integer.MIN_VALUE)
+        .extra("long", Long.MAX_VALUE)
+        .extra("short", (short) -300)
+        .extra("string", "value \u00e9")
+        .extra("booleans", new boolean[]{true, false})
+        .extra("bytes", new byte[]{1, -1})
+        .extra("chars", new char[]{'a', '\uffff'})
+        .extra("doubles", new double[]{0.1d, -2d})
+        .extra("floats", new float[]{0.5f})
+        .extra("ints", new int[]{-1, 0, Integer.MAX_VALUE})
+        .extra("longs", new long[]{Long.MIN_VALUE, 7L})
+        .extra("shorts", new short[]{Short.MIN_VALUE})
+        .extra("strings", new String[]{"a", null, "a"})
+        .extra("serializable", new Date(42L))
+        .extraIntegerList("integers", new ArrayList<>(Arrays.asList(1, null, -5)))
+        .extraStringList("string_list", new ArrayList<>(Arrays.asList("x", "y")))
+        .build();
+    IntentSpec decoded = IntentSpecCodec.decode(IntentSpecCodec.encode(spec), Date.class);
+    assertEquals(spec, decoded);
+    assertEquals(Integer.MIN_VALUE, decoded.getExtra("int"));
+    assertEquals(new Date(42L), decoded.getExtra("serializable"));
+    assertArrayEquals(new String[]{"a", null, "a"}, (String[]) decoded.getExtra("strings"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void serializableNotAllowedByDefault() {
+    IntentSpec spec = IntentSpec.builder().extra("date", new Date(42L)).build();
+    IntentSpecCodec.decode(IntentSpecCodec.encode(spec));
+  }
+
+  @Test
+  public void serializableAllowListCoversNestedClasses() {
+    HashMap<String, Object> map = new HashMap<>();
+    map.put("date", new Date(42L));
+    map.put("count", 3);
+    map.put("ids", new Long[]{1L});
+    byte[] bytes = IntentSpecCodec.encode(IntentSpec.builder().extra("map", map).build());
+    try {
+      IntentSpecCodec.decode(bytes, HashMap.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getCause() instanceof InvalidClassException);
+    }
+    HashMap<?, ?> decoded =
+        (HashMap<?, ?>) IntentSpecCodec.decode(bytes, HashMap.class, Date.class).getExtra("map");
+    assertEquals(new Date(42L), decoded.get("date"));
+    assertEquals(3, decoded.get("count"));
+    assertArrayEquals(new Long[]{1L}, (Long[]) decoded.get("ids"));
+  }
+
+  @Test
+  public void readerUsesAllowList() throws Exception {
+    IntentSpec spec = IntentSpec.builder().extra("date", new Date(42L)).build();
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    IntentSpecCodec.write(spec, buffer);
+    byte[] bytes = Arrays.copyOf(buffer.array(), buffer.position());
+    IntentSpecCodec.Reader reader = new IntentSpecCodec.Reader(
+        Channels.newChannel(new ByteArrayInputStream(bytes)), 8192, Date.class);
+    assertEquals(spec, reader.next());
+  }
+
+  @Test
+  public void emptySpec() {
+    IntentSpec spec = IntentSpec.builder().build();
+    byte[] bytes = IntentSpecCodec.encode(spec);
+    assertEquals(6, bytes.length);
+    assertEquals(spec, IntentSpecCodec.decode(bytes));
+  }
+
+  @Test
+  public void repeatedStringsStoredOnce() {
+    String value = "a fairly long string value that repeats";
+    IntentSpec once = IntentSpec.builder().extra("my_key", value).build();
+    IntentSpec twice = IntentSpec.builder().extra("my_key", value).action(value).build();
+    int difference = IntentSpecCodec.encode(twice).length - IntentSpecCodec.encode(once).length;
+    assertTrue(difference < 4);
+  }
+
+  @Test
+  public void smallerThanJavaSerialization() throws Exception {
+    IntentSpec spec = IntentSpec.builder()
+        .action("my_action")
+        .extra("id", 42L)
+        .extra("name", "value")
+        .build();
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(serialized);
+    out.writeObject(new String[]{"my_action", "id", "name", "value"});
+    out.writeLong(42L);
+    out.close();
+    assertTrue(IntentSpecCodec.encode(spec).length < serialized.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownVersion() {
+    byte[] bytes = IntentSpecCodec.encode(IntentSpec.builder().action("my_action").build());
+    bytes[0] = 99;
+    IntentSpecCodec.decode(bytes);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void truncated() {
+    byte[] bytes = IntentSpecCodec.encode(IntentSpec.builder().action("my_action").build());
+    IntentSpecCodec.decode(Arrays.copyOf(bytes, bytes.length - 2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void oversizedCount() {
+    // Version, no strings, nothing present, no flags, then 2^31 - 1 categories.
+    IntentSpecCodec.decode(new byte[]{1, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, 0x07});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeCount() {
+    IntentSpecCodec.decode(new byte[]{1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+        0x0f});
+  }
+
+  @Test
+  public void truncatedAtEveryLength() {
+    byte[] bytes = IntentSpecCodec.encode(fuzzSpec());
+    for (int length = 0; length < bytes.length; length++) {
+      try {
+        IntentSpecCodec.decode(Arrays.copyOf(bytes, length));
+        throw new AssertionError("Decoded a record truncated to " + length + " bytes");
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void corruptedBytes() {
+    byte[] bytes = IntentSpecCodec.encode(fuzzSpec());
+    Random random = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      byte[] corrupt = bytes.clone();
+      for (int j = random.nextInt(3); j >= 0; j--) {
+        corrupt[1 + random.nextInt(corrupt.length - 1)] = (byte) random.nextInt();
+      }
+      try {
+        IntentSpecCodec.decode(corrupt);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void corruptedFrames() {
+    ByteBuffer valid = ByteBuffer.allocate(1024);
+    IntentSpecCodec.write(fuzzSpec(), valid);
+    IntentSpecCodec.write(IntentSpec.builder().action("next").build(), valid);
+    byte[] bytes = Arrays.copyOf(valid.array(), valid.position());
+    Random random = new Random(7);
+    for (int i = 0; i < 5000; i++) {
+      byte[] corrupt = bytes.clone();
+      corrupt[random.nextInt(corrupt.length)] = (byte) random.nextInt();
+      ByteBuffer buffer = ByteBuffer.wrap(corrupt);
+      try {
+        while (IntentSpecCodec.read(buffer) != null) {
+          assertTrue(buffer.position() <= buffer.limit());
+        }
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void overflowingFrameLength() {
+    IntentSpecCodec.read(ByteBuffer.wrap(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, 0x0f, 1}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void oversizedFrameLength() {
+    // MAX_RECORD_LENGTH + 1 = 2^26 + 1.
+    IntentSpecCodec.read(ByteBuffer.wrap(new byte[]{(byte) 0x81, (byte) 0x80, (byte) 0x80,
+        0x20}));
+  }
+
+  @Test
+  public void framedBuffer() {
+    IntentSpec first = IntentSpec.builder().action("first").extra("n", 1).build();
+    IntentSpec second = IntentSpec.builder().action("second").extra("n", 2).build();
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    IntentSpecCodec.write(first, buffer);
+    IntentSpecCodec.write(second, buffer);
+    buffer.flip();
+    assertEquals(first, IntentSpecCodec.read(buffer));
+    assertEquals(second, IntentSpecCodec.read(buffer));
+    assertNull(IntentSpecCodec.read(buffer));
+  }
+
+  @Test
+  public void partialFrame() {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    IntentSpecCodec.write(IntentSpec.builder().action("first").build(), buffer);
+    buffer.flip();
+    buffer.limit(buffer.limit() - 1);
+    assertNull(IntentSpecCodec.read(buffer));
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void channels() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    IntentSpecCodec.Writer writer = new IntentSpecCodec.Writer(Channels.newChannel(bytes), 16);
+    for (int i = 0; i < 100; i++) {
+      writer.write(IntentSpec.builder().action("action" + i).extra("index", i).build());
+    }
+    writer.flush();
+
+    IntentSpecCodec.Reader reader = new IntentSpecCodec.Reader(
+        Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), 8);
+    for (int i = 0; i < 100; i++) {
+      IntentSpec spec = reader.next();
+      assertEquals("action" + i, spec.getAction());
+      assertEquals(i, spec.getExtra("index"));
+    }
+    assertNull(reader.next());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void oversizedFrameInChannel() throws Exception {
+    byte[] bytes = {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0x7f};
+    new IntentSpecCodec.Reader(Channels.newChannel(new ByteArrayInputStream(bytes)), 8).next();
+  }
+
+  @Test(expected = EOFException.class)
+  public void truncatedChannel() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    IntentSpecCodec.write(IntentSpec.builder().action("first").build(), buffer);
+    byte[] bytes = Arrays.copyOf(buffer.array(), buffer.position() - 1);
+    new IntentSpecCodec.Reader(Channels.newChannel(new ByteArrayInputStream(bytes))).next();
+  }
+
+  private static IntentSpec fuzzSpec() {
+    return IntentSpec.builder()
+        .action("my_action")
+        .data("content://my_data/1")
+        .className("my.package", "my.package.MyActivity")
+        .flags(0x10000000)
+        .categories("a", "b")
+        .extra("boolean", true)
+        .extra("char", 'c')
+        .extra("double", -1.5d)
+        .extra("long", Long.MAX_VALUE)
+        .extra("string", "value")
+        .extra("bytes", new byte[]{1, -1})
+        .extra("doubles", new double[]{0.1d, -2d})
+        .extra("floats", new float[]{0.5f})
+        .extra("ints", new int[]{-1, 0, Integer.MAX_VALUE})
+        .extra("strings", new String[]{"a", null, "a"})
+        .extraIntegerList("integers", new ArrayList<>(Arrays.asList(1, null, -5)))
+        .extraStringList("string_list", new ArrayList<>(Arrays.asList("x", "y")))
+        .build();
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class IntentSpecTest {
+
+  @Test
+  public void fields() {
+    IntentSpec spec = IntentSpec.builder()
+        .action("my_action")
+        .data("content://my_data")
+        .type("text/plain")
+        .className("my.package", "my.package.MyActivity")
+        .setPackage("my.package")
+        .flags(1, 2)
+        .categories("a", "b", "a")
+        .build();
+    assertEquals("my_action", spec.getAction());
+    assertEquals("content://my_data", spec.getData());
+    assertEquals("text/plain", spec.getType());
+    assertEquals("my.package", spec.getComponentPackage());
+    assertEquals("my.package.MyActivity", spec.getComponentClass());
+    assertEquals("my.package", spec.getPackage());
+    assertEquals(3, spec.getFlags());
+    assertEquals(Arrays.asList("a", "b"), new ArrayList<>(spec.getCategories()));
+  }
+
+  @Test
+  public void extras() {
+    int[] ints = {1, 2};
+    IntentSpec spec = IntentSpec.builder()
+        .extra("boolean", true)
+        .extra("double", 1.5d)
+        .extra("float", 2.5f)
+        .extra("string", "value")
+        .extra("ints", ints)
+        .build();
+    assertEquals(5, spec.extrasSize());
+    assertEquals(Arrays.asList("boolean", "double", "float", "string", "ints"), spec.extraNames());
+    assertEquals(true, spec.getExtra("boolean"));
+    assertEquals(1.5d, spec.getExtra("double"));
+    assertEquals(2.5f, spec.getExtra("float"));
+    assertEquals("value", spec.getExtra("string"));
+    assertArrayEquals(ints, (int[]) spec.getExtra("ints"));
+    assertTrue(spec.hasExtra("ints"));
+    assertFalse(spec.hasExtra("missing"));
+    assertNull(spec.getExtra("missing"));
+  }
+
+  @Test
+  public void lastExtraWins() {
+    IntentSpec spec = IntentSpec.builder()
+        .extra("my_key", 1)
+        .extra("other", 2)
+        .extra("my_key", "value")
+        .build();
+    assertEquals(Arrays.asList("my_key", "other"), spec.extraNames());
+    assertEquals("value", spec.getExtra("my_key"));
+  }
+
+  @Test
+  public void manyExtras() {
+    IntentSpec.Builder builder = IntentSpec.builder();
+    for (int i = 0; i < 100; i++) {
+      builder.extra("key" + i, (long) i);
+    }
+    IntentSpec spec = builder.build();
+    assertEquals(100, spec.extrasSize());
+    assertEquals(99L, spec.getExtra("key99"));
+  }
+
+  @Test
+  public void equality() {
+    IntentSpec a = IntentSpec.builder().action("my_action").extra("b", 2).extra("a", new int[]{1})
+        .build();
+    IntentSpec b = IntentSpec.builder().action("my_action").extra("a", new int[]{1}).extra("b", 2)
+        .build();
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertNotEquals(a, IntentSpec.builder().action("my_action").extra("a", new int[]{2})
+        .extra("b", 2).build());
+    assertNotEquals(a, IntentSpec.builder().action("other").extra("a", new int[]{1})
+        .extra("b", 2).build());
+  }
+
+  @Test
+  public void categoriesInHashCode() {
+    IntentSpec a = IntentSpec.builder().action("my_action").categories("a", "b").build();
+    IntentSpec b = IntentSpec.builder().action("my_action").categories("b", "a").build();
+    IntentSpec c = IntentSpec.builder().action("my_action").categories("c").build();
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertNotEquals(a.hashCode(), c.hashCode());
+  }
+
+  @Test
+  public void categoriesComparedAsSets() {
+    IntentSpec built = IntentSpec.builder().categories("a", "b").build();
+    IntentSpec decoded = new IntentSpec(null, null, null, null, null, null, 0,
+        new String[]{"b", "a", "b"}, new String[0], new ExtraType[0], new long[0], new Object[0]);
+    assertEquals(built, decoded);
+    assertEquals(built.hashCode(), decoded.hashCode());
+    assertNotEquals(built, IntentSpec.builder().categories("a").build());
+    assertNotEquals(IntentSpec.builder().categories("a").build(), built);
+  }
+
+  @Test
+  public void arraysCopiedOnSet() {
+    int[] ints = {1, 2};
+    ArrayList<String> strings = new ArrayList<>(Arrays.asList("a"));
+    IntentSpec spec = IntentSpec.builder()
+        .extra("ints", ints)
+        .extraStringList("strings", strings)
+        .build();
+    ints[0] = 5;
+    strings.add("b");
+    assertArrayEquals(new int[]{1, 2}, (int[]) spec.getExtra("ints"));
+    assertEquals(Arrays.asList("a"), spec.getExtra("strings"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void arraysCopiedOnGet() {
+    IntentSpec spec = IntentSpec.builder()
+        .extra("ints", new int[]{1, 2})
+        .extra("names", new String[]{"a"})
+        .extraIntegerList("integers", new ArrayList<>(Arrays.asList(1)))
+        .build();
+    IntentSpec same = IntentSpec.builder()
+        .extra("ints", new int[]{1, 2})
+        .extra("names", new String[]{"a"})
+        .extraIntegerList("integers", new ArrayList<>(Arrays.asList(1)))
+        .build();
+    int hash = spec.hashCode();
+    ((int[]) spec.getExtra("ints"))[0] = 5;
+    ((String[]) spec.getExtra("names"))[0] = "b";
+    ((ArrayList<Integer>) spec.getExtra("integers")).add(2);
+    assertEquals(same, spec);
+    assertEquals(hash, spec.hashCode());
+  }
+
+  @Test
+  public void arraysCopiedIntoIntent() {
+    IntentSpec spec = IntentSpec.builder().extra("ints", new int[]{1, 2}).build();
+    Intent intent = new Intent();
+    spec.applyTo(intent);
+    intent.getIntArrayExtra("ints")[0] = 5;
+    assertArrayEquals(new int[]{1, 2}, (int[]) spec.getExtra("ints"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void blankAction() {
+    IntentSpec.builder().action("");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void blankName() {
+    IntentSpec.builder().extra("", 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyArray() {
+    IntentSpec.builder().extra("my_key", new long[0]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyList() {
+    IntentSpec.builder().extraStringList("my_key", new ArrayList<String>());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyCategories() {
+    IntentSpec.builder().categories();
+  }
+
+  @Test
+  public void applyTo() {
+    IntentSpec spec = IntentSpec.builder()
+        .action("my_action")
+        .type("text/plain")
+        .className("my.package", "my.package.MyActivity")
+        .flag(4)
+        .categories("my_category")
+        .extra("my_key", 5)
+        .extra("list", new ArrayList<>(Arrays.asList("a")))
+        .build();
+    Intent intent = mock(Intent.class);
+    spec.applyTo(intent);
+    verify(intent).setAction("my_action");
+    verify(intent).setType("text/plain");
+    verify(intent).setClassName("my.package", "my.package.MyActivity");
+    verify(intent).addFlags(4);
+    verify(intent).addCategory("my_category");
+    verify(intent).putExtra("my_key", 5);
+  }
+}
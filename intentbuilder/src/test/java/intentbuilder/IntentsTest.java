@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IntentsTest {
+
+  @After
+  public void tearDown() {
+    InternPool.clear();
+  }
+
+  @Test
+  public void equalHeaders() {
+    Intent a = intent("my_action", 1, null);
+    Intent b = intent("my_action", 1, null);
+    assertTrue(Intents.equals(a, b));
+    assertEquals(Intents.hashCode(a), Intents.hashCode(b));
+  }
+
+  @Test
+  public void differentFlags() {
+    assertFalse(Intents.equals(intent("my_action", 1, null), intent("my_action", 2, null)));
+  }
+
+  @Test
+  public void differentAction() {
+    assertFalse(Intents.equals(intent("my_action", 1, null), intent("other", 1, null)));
+  }
+
+  @Test
+  public void nulls() {
+    assertTrue(Intents.equals((Intent) null, null));
+    assertFalse(Intents.equals(intent("my_action", 1, null), null));
+    assertEquals(0, Intents.hashCode((Intent) null));
+  }
+
+  @Test
+  public void arrayExtras() {
+    Intent a = intent("my_action", 0, bundle("my_key", new int[]{1, 2}, "b", "value"));
+    Intent b = intent("my_action", 0, bundle("b", "value", "my_key", new int[]{1, 2}));
+    assertTrue(Intents.equals(a, b));
+    assertEquals(Intents.hashCode(a), Intents.hashCode(b));
+  }
+
+  @Test
+  public void differentExtras() {
+    Intent a = intent("my_action", 0, bundle("my_key", new int[]{1, 2}));
+    Intent b = intent("my_action", 0, bundle("my_key", new int[]{1, 3}));
+    assertFalse(Intents.equals(a, b));
+  }
+
+  @Test
+  public void nestedBundles() {
+    Intent a = intent("my_action", 0, bundle("my_key", bundle("inner", 5L)));
+    Intent b = intent("my_action", 0, bundle("my_key", bundle("inner", 5L)));
+    assertTrue(Intents.equals(a, b));
+    assertEquals(Intents.hashCode(a), Intents.hashCode(b));
+  }
+
+  @Test
+  public void missingExtras() {
+    Intent a = intent("my_action", 0, bundle("my_key", "value"));
+    assertFalse(Intents.equals(a, intent("my_action", 0, null)));
+  }
+
+  @Test
+  public void internCopyReturnsFirst() {
+    Intent a = new Intent("my_action").putExtra("my_key", "value");
+    Intent b = new Intent("my_action").putExtra("my_key", "value");
+    Intent shared = InternPool.internCopy(a);
+    assertNotSame(a, shared);
+    assertSame(shared, InternPool.internCopy(b));
+    assertSame(shared, InternPool.internCopy(shared));
+    assertEquals(1, InternPool.size());
+  }
+
+  @Test
+  public void internCopyNotChangedByCaller() {
+    Intent a = new Intent("my_action").putExtra("my_key", "value");
+    Intent shared = InternPool.internCopy(a);
+    a.setAction("other").putExtra("my_key", "changed").addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+    assertEquals("my_action", shared.getAction());
+    assertEquals("value", shared.getStringExtra("my_key"));
+    assertEquals(0, shared.getFlags());
+    assertSame(shared,
+        InternPool.internCopy(new Intent("my_action").putExtra("my_key", "value")));
+    assertNotSame(shared, InternPool.internCopy(a));
+  }
+
+  @Test
+  public void internCopyDistinct() {
+    Intent a = InternPool.internCopy(new Intent("my_action"));
+    assertNotSame(a, InternPool.internCopy(new Intent("other")));
+    assertEquals(2, InternPool.size());
+  }
+
+  @Test
+  public void internCopyBounded() {
+    for (int i = 0; i < InternPool.MAX_SIZE + 10; i++) {
+      InternPool.internCopy(new Intent("action" + i));
+    }
+    assertEquals(InternPool.MAX_SIZE, InternPool.size());
+  }
+
+  @Test
+  public void buildSharedNotChangedByDeferredBuilder() {
+    IntentBuilder builder = new IntentBuilder("my_action").deferred().extra("my_key", "value");
+    Intent shared = builder.buildShared();
+    IntentBuilder fork = builder.fork().extra("my_key", "fork");
+    builder.extra("my_key", "changed").extra("other", 1);
+    assertEquals("fork", fork.build().getStringExtra("my_key"));
+    assertEquals("changed", builder.build().getStringExtra("my_key"));
+    assertEquals("value", shared.getStringExtra("my_key"));
+    assertFalse(shared.hasExtra("other"));
+    assertSame(shared,
+        new IntentBuilder("my_action").extra("my_key", "value").buildShared());
+  }
+
+  private static Intent intent(String action, int flags, Bundle extras) {
+    Intent intent = mock(Intent.class);
+    when(intent.getAction()).thenReturn(action);
+    when(intent.getFlags()).thenReturn(flags);
+    when(intent.getExtras()).thenReturn(extras);
+    return intent;
+  }
+
+  private static Bundle bundle(Object... keysAndValues) {
+    Bundle bundle = mock(Bundle.class);
+    Set<String> keys = new LinkedHashSet<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      String key = (String) keysAndValues[i];
+      keys.add(key);
+      when(bundle.get(key)).thenReturn(keysAndValues[i + 1]);
+      when(bundle.containsKey(key)).thenReturn(true);
+    }
+    when(bundle.keySet()).thenReturn(keys);
+    when(bundle.size()).thenReturn(keys.size());
+    return bundle;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResolutionCacheTest {
+
+  private PackageManager mPackageManager;
+  private ResolveInfo mInfo;
+  private ResolutionCache mCache;
+
+  @Before
+  public void setUp() {
+    mPackageManager = mock(PackageManager.class);
+    mInfo = new ResolveInfo();
+    when(mPackageManager.resolveActivity(any(Intent.class), anyInt())).thenReturn(mInfo);
+    mCache = new ResolutionCache(8);
+  }
+
+  @Test
+  public void hit() {
+    assertSame(mInfo, mCache.resolveActivity(mPackageManager, view("https://a.com/1"), 0));
+    assertSame(mInfo, mCache.resolveActivity(mPackageManager, view("https://a.com/1"), 0));
+    verify(mPackageManager, times(1)).resolveActivity(any(Intent.class), anyInt());
+    assertEquals(1, mCache.hitCount());
+    assertEquals(1, mCache.missCount());
+  }
+
+  @Test
+  public void keyFields() {
+    mCache.resolveActivity(mPackageManager, view("https://a.com/1"), 0);
+    mCache.resolveActivity(mPackageManager, view("https://b.com/1"), 0);
+    mCache.resolveActivity(mPackageManager, view("http://a.com/1"), 0);
+    mCache.resolveActivity(mPackageManager, view("https://a.com/1").addCategory("c"), 0);
+    mCache.resolveActivity(mPackageManager, view("https://a.com/1").setPackage("p"), 0);
+    mCache.resolveActivity(mPackageManager, view("https://a.com/1"), 1);
+    assertEquals(6, mCache.missCount());
+    assertEquals(0, mCache.hitCount());
+  }
+
+  @Test
+  public void pathInKey() {
+    // Like a filter with android:pathPrefix="/a".
+    when(mPackageManager.resolveActivity(any(Intent.class), anyInt()))
+        .thenAnswer(new Answer<ResolveInfo>() {
+          @Override
+          public ResolveInfo answer(InvocationOnMock invocation) {
+            Intent intent = (Intent) invocation.getArguments()[0];
+            return intent.getData().getEncodedPath().startsWith("/a") ? mInfo : null;
+          }
+        });
+    assertSame(mInfo, mCache.resolveActivity(mPackageManager, view("https://host/a"), 0));
+    assertNull(mCache.resolveActivity(mPackageManager, view("https://host/b"), 0));
+    assertSame(mInfo, mCache.resolveActivity(mPackageManager, view("https://host/a"), 0));
+    assertNull(mCache.resolveActivity(mPackageManager, view("https://host/b"), 0));
+    assertEquals(2, mCache.missCount());
+    assertEquals(2, mCache.hitCount());
+  }
+
+  @Test
+  public void buildResolvedRegistersDefault() {
+    Context application = mock(Context.class);
+    Context context = mock(Context.class);
+    when(context.getApplicationContext()).thenReturn(application);
+    try {
+      new IntentBuilder("my_action").context(context).buildResolved(mPackageManager);
+      verify(application).registerReceiver(any(BroadcastReceiver.class), any(IntentFilter.class));
+    } finally {
+      ResolutionCache.getDefault().unregister(application);
+      ResolutionCache.getDefault().invalidate();
+    }
+  }
+
+  @Test
+  public void cachesMissingHandler() {
+    when(mPackageManager.resolveActivity(any(Intent.class), anyInt())).thenReturn(null);
+    assertNull(mCache.resolveActivity(mPackageManager, new Intent("my_action"), 0));
+    assertNull(mCache.resolveActivity(mPackageManager, new Intent("my_action"), 0));
+    verify(mPackageManager, times(1)).resolveActivity(any(Intent.class), anyInt());
+  }
+
+  @Test
+  public void bounded() {
+    for (int i = 0; i < 20; i++) {
+      mCache.resolveActivity(mPackageManager, new Intent("action" + i), 0);
+    }
+    assertEquals(8, mCache.size());
+  }
+
+  @Test
+  public void invalidatedOnPackageChange() {
+    Context context = mock(Context.class);
+    mCache.register(context);
+    ArgumentCaptor<BroadcastReceiver> receiver = ArgumentCaptor.forClass(BroadcastReceiver.class);
+    verify(context).registerReceiver(receiver.capture(), any(IntentFilter.class));
+
+    mCache.resolveActivity(mPackageManager, new Intent("my_action"), 0);
+    receiver.getValue().onReceive(context, new Intent(Intent.ACTION_PACKAGE_ADDED));
+    assertEquals(0, mCache.size());
+    mCache.resolveActivity(mPackageManager, new Intent("my_action"), 0);
+    assertEquals(2, mCache.missCount());
+
+    mCache.unregister(context);
+    verify(context).unregisterReceiver(receiver.getValue());
+  }
+
+  @Test
+  public void keyNotChangedByIntent() {
+    Intent intent = new Intent("my_action").addCategory("a");
+    mCache.resolveActivity(mPackageManager, intent, 0);
+    intent.addCategory("b");
+    mCache.resolveActivity(mPackageManager, new Intent("my_action").addCategory("a"), 0);
+    assertEquals(1, mCache.hitCount());
+  }
+
+  @Test
+  public void invalidateDuringLookup() {
+    when(mPackageManager.resolveActivity(any(Intent.class), anyInt()))
+        .thenAnswer(new Answer<ResolveInfo>() {
+          @Override
+          public ResolveInfo answer(InvocationOnMock invocation) {
+            mCache.invalidate();
+            return mInfo;
+          }
+        });
+    assertSame(mInfo, mCache.resolveActivity(mPackageManager, new Intent("my_action"), 0));
+    assertEquals(0, mCache.size());
+  }
+
+  @Test
+  public void resetStats() {
+    mCache.resolveActivity(mPackageManager, new Intent("my_action"), 0);
+    mCache.resetStats();
+    assertEquals(0, mCache.missCount());
+  }
+
+  @Test
+  public void buildResolved() {
+    Intent intent = new IntentBuilder("my_action").buildResolved(mPackageManager, mCache);
+    assertEquals("my_action", intent.getAction());
+    verify(mPackageManager).resolveActivity(intent, PackageManager.MATCH_DEFAULT_ONLY);
+  }
+
+  @Test
+  public void buildResolvedNoHandler() {
+    when(mPackageManager.resolveActivity(any(Intent.class), anyInt())).thenReturn(null);
+    assertNull(new IntentBuilder("my_action").buildResolved(mPackageManager, mCache));
+  }
+
+  private static Intent view(String uri) {
+    return new Intent(Intent.ACTION_VIEW, Uri.parse(uri));
+  }
+}
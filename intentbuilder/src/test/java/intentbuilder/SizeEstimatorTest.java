@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SizeEstimatorTest {
+
+  // Expected values follow Parcel's layout: 4 byte ints, UTF-16 strings with a length prefix
+  // and a null terminator, everything padded to 4 bytes.
+
+  @Test
+  public void string() {
+    assertEquals(4, SizeEstimator.string(null));
+    assertEquals(8, SizeEstimator.string("k"));
+    assertEquals(16, SizeEstimator.string("value"));
+  }
+
+  @Test
+  public void primitives() {
+    assertEquals(8, SizeEstimator.sizeOf(ExtraType.INT, 1, null));
+    assertEquals(8, SizeEstimator.sizeOf(ExtraType.BOOLEAN, 1, null));
+    assertEquals(12, SizeEstimator.sizeOf(ExtraType.LONG, 1, null));
+    assertEquals(12, SizeEstimator.sizeOf(ExtraType.DOUBLE, 1, null));
+  }
+
+  @Test
+  public void arrays() {
+    assertEquals(8 + 12, SizeEstimator.value(new int[3]));
+    assertEquals(8 + 24, SizeEstimator.value(new long[3]));
+    assertEquals(8 + 8, SizeEstimator.value(new byte[5]));
+    assertEquals(8 + 8 + 16, SizeEstimator.value(new String[]{"k", "value"}));
+  }
+
+  @Test
+  public void list() {
+    ArrayList<Integer> list = new ArrayList<>();
+    list.add(1);
+    list.add(2);
+    assertEquals(8 + 16, SizeEstimator.value(list));
+  }
+
+  @Test
+  public void builderTotal() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock);
+    assertEquals(SizeEstimator.BUNDLE_HEADER, builder.estimatedSizeBytes());
+    builder.extra("k", 1).extra("s", "value");
+    assertEquals(SizeEstimator.BUNDLE_HEADER + (8 + 8) + (8 + 20), builder.estimatedSizeBytes());
+  }
+
+  @Test
+  public void builderBreakdown() {
+    Intent mock = mock(Intent.class);
+    Map<String, Integer> sizes = new IntentBuilder(mock)
+        .sizeBudget(1024, true)
+        .extra("k", 1)
+        .extra("a", new int[3])
+        .extra("k", 2L)
+        .estimatedExtraSizes();
+    assertEquals(2, sizes.size());
+    assertEquals(Integer.valueOf(8 + 12), sizes.get("k"));
+    assertEquals(Integer.valueOf(8 + 20), sizes.get("a"));
+  }
+
+  @Test
+  public void builderDeferred() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).deferred().extra("k", 1);
+    assertEquals(SizeEstimator.BUNDLE_HEADER + 16, builder.estimatedSizeBytes());
+  }
+
+  @Test
+  public void budgetFailFast() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).sizeBudget(32, true).extra("k", 1);
+    try {
+      builder.extra("a", new byte[64]);
+      throw new AssertionError("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+    verify(mock, never()).putExtra("a", new byte[64]);
+  }
+
+  @Test
+  public void budgetFailFastRejectedNotCounted() {
+    Intent mock = mock(Intent.class);
+    IntentBuilder builder = new IntentBuilder(mock).sizeBudget(48, true).extra("k", 1);
+    int before = builder.estimatedSizeBytes();
+    try {
+      builder.extra("a", new byte[64]);
+      throw new AssertionError("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(before, builder.estimatedSizeBytes());
+    assertFalse(builder.estimatedExtraSizes().containsKey("a"));
+    builder.extra("b", 2);
+    verify(mock, times(1)).putExtra("b", 2);
+    assertEquals(before + 16, builder.estimatedSizeBytes());
+  }
+
+  @Test
+  public void budgetFailFastBundleAllOrNothing() {
+    Bundle extras = new Bundle();
+    extras.putInt("small", 1);
+    extras.putByteArray("large", new byte[64]);
+    IntentBuilder builder = new IntentBuilder(mock(Intent.class)).sizeBudget(48, true);
+    try {
+      builder.extras(extras);
+      throw new AssertionError("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(SizeEstimator.BUNDLE_HEADER, builder.estimatedSizeBytes());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void budgetZero() {
+    new IntentBuilder(mock(Intent.class)).sizeBudget(0, true);
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Roberto Estivill
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package intentbuilder;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SpillTest {
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Test
+  public void underThreshold() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    assertNull(spill.spill(new byte[16]));
+  }
+
+  @Test
+  public void bytes() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    byte[] data = payload(64);
+    SpillHandle handle = spill.spill(data);
+    assertNotNull(handle);
+    assertEquals(64, handle.length());
+    assertEquals(SpillHandle.KIND_BYTES, handle.kind());
+    ByteBuffer mapped = spill.map(handle);
+    for (byte b : data) {
+      assertEquals(b, mapped.get());
+    }
+  }
+
+  @Test
+  public void serializable() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    ArrayList<String> value = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      value.add("value_" + i);
+    }
+    SpillHandle handle = spill.spill(value);
+    assertNotNull(handle);
+    assertEquals(value, spill.readSerializable(handle));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrongKind() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    spill.readSerializable(spill.spill(payload(64)));
+  }
+
+  @Test
+  public void release() throws IOException {
+    File directory = mFolder.newFolder();
+    Spill spill = new Spill(directory, 16);
+    SpillHandle handle = spill.spill(payload(64));
+    assertTrue(spill.release(handle));
+    assertFalse(new File(directory, handle.id()).exists());
+  }
+
+  @Test
+  public void purge() throws IOException {
+    File directory = mFolder.newFolder();
+    Spill spill = new Spill(directory, 16);
+    SpillHandle old = spill.spill(payload(64));
+    SpillHandle recent = spill.spill(payload(64));
+    assertTrue(new File(directory, old.id()).setLastModified(System.currentTimeMillis() - 60000));
+    assertEquals(1, spill.purge(30000));
+    assertFalse(new File(directory, old.id()).exists());
+    assertTrue(new File(directory, recent.id()).exists());
+  }
+
+  @Test
+  public void builderSpills() throws IOException {
+    Intent mock = mock(Intent.class);
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    new IntentBuilder(mock).spill(spill)
+        .extra("small", new byte[8])
+        .extra("large", payload(64));
+    verify(mock, times(1)).putExtra("small", new byte[8]);
+    verify(mock, times(1)).putExtra(eq("large"), any(Parcelable.class));
+  }
+
+  @Test
+  public void readerMaps() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    SpillHandle handle = spill.spill(payload(64));
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("large")).thenReturn(handle);
+    ByteBuffer bytes = new IntentReader(extras).spill(spill).getBytes("large");
+    assertEquals(64, bytes.remaining());
+    assertEquals(payload(64)[10], bytes.get(10));
+  }
+
+  @Test
+  public void readerDecodes() throws IOException {
+    File directory = mFolder.newFolder();
+    Spill spill = new Spill(directory, 16);
+    String value = new String(new char[64]);
+    SpillHandle handle = spill.spill((Serializable) value);
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("large")).thenReturn(handle);
+    IntentReader reader = new IntentReader(extras).spill(spill);
+    assertEquals(value, reader.getSerializable("large"));
+    reader.releaseSpilled();
+    assertFalse(new File(directory, handle.id()).exists());
+  }
+
+  @Test
+  public void readerWithoutSpill() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("large")).thenReturn(spill.spill(payload(64)));
+    IntentReader.Listener listener = mock(IntentReader.Listener.class);
+    assertNull(new IntentReader(extras).listener(listener).getBytes("large"));
+    verify(listener, times(1)).onMissing("large");
+  }
+
+  // //////////////////////
+  // Forged handles
+  // //////////////////////
+
+  @Test
+  public void forgedRelativePath() throws IOException {
+    File root = mFolder.newFolder();
+    File directory = new File(new File(root, "cache"), Spill.DIRECTORY);
+    File target = new File(new File(root, "shared_prefs"), "x.xml");
+    assertTrue(target.getParentFile().mkdirs());
+    assertTrue(target.createNewFile());
+    Spill spill = new Spill(directory, 16);
+    assertForgedRejected(spill, target, "../../shared_prefs/x.xml");
+    assertForgedRejected(spill, target, "../shared_prefs/x.xml");
+  }
+
+  @Test
+  public void forgedAbsolutePath() throws IOException {
+    File directory = mFolder.newFolder();
+    File target = mFolder.newFile("secret");
+    Spill spill = new Spill(directory, 16);
+    assertForgedRejected(spill, target, target.getAbsolutePath());
+  }
+
+  @Test
+  public void forgedPrefixedName() throws IOException {
+    File directory = mFolder.newFolder();
+    File target = new File(directory, "spill-x.xml");
+    assertTrue(target.createNewFile());
+    Spill spill = new Spill(directory, 16);
+    assertForgedRejected(spill, target, "spill-x.xml");
+    // Right prefix, suffix and length, but the UUID part walks out of the directory.
+    assertForgedRejected(spill, target, "spill-../../../../../../../../../../../../.bin");
+  }
+
+  @Test
+  public void forgedLength() throws IOException {
+    Spill spill = new Spill(mFolder.newFolder(), 16);
+    SpillHandle handle = spill.spill(payload(64));
+    SpillHandle forged = new SpillHandle(handle.id(), 1 << 20, SpillHandle.KIND_BYTES);
+    try {
+      spill.map(forged);
+    } catch (IOException expected) {
+      return;
+    }
+    throw new AssertionError("Expected an IOException");
+  }
+
+  @Test
+  public void forgedThroughReader() throws IOException {
+    File directory = mFolder.newFolder();
+    File target = mFolder.newFile("secret");
+    Bundle extras = mock(Bundle.class);
+    when(extras.get("large")).thenReturn(
+        new SpillHandle(target.getAbsolutePath(), 0, SpillHandle.KIND_SERIALIZABLE));
+    IntentReader reader = new IntentReader(extras).spill(new Spill(directory, 16));
+    assertNull(reader.getSerializable("large"));
+    assertNull(reader.getBytes("large"));
+    reader.releaseSpilled();
+    assertTrue(target.exists());
+  }
+
+  private static void assertForgedRejected(Spill spill, File target, String id) {
+    SpillHandle forged = new SpillHandle(id, 0, SpillHandle.KIND_SERIALIZABLE);
+    assertFalse(spill.release(forged));
+    assertTrue(target.exists());
+    try {
+      spill.map(forged);
+      throw new AssertionError("Mapped " + id);
+    } catch (IOException expected) {
+      // Rejected.
+    }
+    try {
+      spill.readSerializable(forged);
+      throw new AssertionError("Read " + id);
+    } catch (IOException expected) {
+      // Rejected.
+    }
+  }
+
+  private static byte[] payload(int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) i;
+    }
+    return data;
+  }
+}